@@ -0,0 +1,428 @@
+/**
+ * Copyright (c) 2010-2021 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.persistence.dynamodb.internal;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.core.common.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import software.amazon.awssdk.core.exception.SdkServiceException;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbAsyncTable;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedAsyncClient;
+import software.amazon.awssdk.enhanced.dynamodb.model.BatchWriteItemEnhancedRequest;
+import software.amazon.awssdk.enhanced.dynamodb.model.WriteBatch;
+import software.amazon.awssdk.services.dynamodb.model.ProvisionedThroughputExceededException;
+import software.amazon.awssdk.services.dynamodb.model.ResourceNotFoundException;
+
+/**
+ * Writes items with BatchWriteItem requests of up to 25 items.
+ *
+ * Items are queued by {@link #add(DynamoDBItem)} and sent by a single dispatcher thread, at most
+ * {@link #MAX_IN_FLIGHT} requests at a time. Unprocessed items and throttled requests are retried with jittered
+ * exponential backoff. Throttling also increases the delay between requests, which decreases again with every request
+ * that is processed completely.
+ *
+ * If the table does not exist yet, the items are written with {@link TableCreatingPutItem}, which creates the table.
+ *
+ * @author craigham - Initial contribution
+ */
+@NonNullByDefault
+public class DynamoDBBatchWriter {
+    /** BatchWriteItem limit */
+    static final int MAX_BATCH_SIZE = 25;
+    static final int MAX_IN_FLIGHT = 4;
+    private static final int QUEUE_SIZE = 10000;
+    private static final long BATCH_LINGER_MILLIS = 50;
+    private static final long MIN_SEND_DELAY_MILLIS = 20;
+    private static final long MAX_SEND_DELAY_MILLIS = 5000;
+    private static final long BASE_BACKOFF_MILLIS = 50;
+    private static final long MAX_BACKOFF_MILLIS = 10000;
+    private static final int MAX_ATTEMPTS = 10;
+    private static final Duration SHUTDOWN_TIMEOUT = Duration.ofSeconds(30);
+
+    private final Logger logger = LoggerFactory.getLogger(DynamoDBBatchWriter.class);
+
+    private final DynamoDBPersistenceService service;
+    private final ExecutorService executor;
+    private final BlockingQueue<DynamoDBItem<?>> queue = new LinkedBlockingQueue<>(QUEUE_SIZE);
+    private final DelayQueue<RetryBatch> retries = new DelayQueue<>();
+    private final Semaphore inFlight = new Semaphore(MAX_IN_FLIGHT);
+    // requests that have not completed yet, including the puts that create a missing table
+    private final Set<CompletableFuture<Void>> requests = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    // delay between two requests, adapted to throttling
+    private volatile long sendDelayMillis = 0;
+    private volatile boolean running = false;
+    private @Nullable Thread dispatcher;
+
+    private static class RetryBatch implements Delayed {
+        private final List<DynamoDBItem<?>> items;
+        private final int attempt;
+        private final long dueNanos;
+
+        private RetryBatch(List<DynamoDBItem<?>> items, int attempt, long delayMillis) {
+            this.items = items;
+            this.attempt = attempt;
+            this.dueNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+        }
+
+        @Override
+        public long getDelay(@Nullable TimeUnit unit) {
+            return TimeUnit.NANOSECONDS.convert(dueNanos - System.nanoTime(), unit);
+        }
+
+        @Override
+        public int compareTo(@Nullable Delayed other) {
+            return other instanceof RetryBatch ? Long.compare(dueNanos, ((RetryBatch) other).dueNanos) : 0;
+        }
+    }
+
+    public DynamoDBBatchWriter(DynamoDBPersistenceService service) {
+        this.service = service;
+        this.executor = service.getExecutor();
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        Thread thread = new NamedThreadFactory("dynamodb-writer").newThread(this::run);
+        dispatcher = thread;
+        thread.start();
+    }
+
+    /**
+     * Stops the dispatcher and writes the queued items, waiting for at most {@link #SHUTDOWN_TIMEOUT}.
+     *
+     * Requests sent by the dispatcher are completed first, so the items they have to retry are written as well.
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        Instant deadline = Instant.now().plus(SHUTDOWN_TIMEOUT);
+        Thread thread = dispatcher;
+        dispatcher = null;
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join(SHUTDOWN_TIMEOUT.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        await(new ArrayList<>(requests), deadline);
+
+        List<DynamoDBItem<?>> remaining = new ArrayList<>();
+        // all retries, not only the ones that are due
+        Iterator<RetryBatch> iterator = retries.iterator();
+        while (iterator.hasNext()) {
+            remaining.addAll(iterator.next().items);
+            iterator.remove();
+        }
+        queue.drainTo(remaining);
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int from = 0; from < remaining.size(); from += MAX_BATCH_SIZE) {
+            List<DynamoDBItem<?>> batch = remaining.subList(from, Math.min(remaining.size(), from + MAX_BATCH_SIZE));
+            // no retries on shutdown, the client is closed right after
+            futures.addAll(sendGroupedByClass(new ArrayList<>(batch), MAX_ATTEMPTS));
+        }
+        await(futures, deadline);
+        logger.debug("Batch writer stopped: written={} retried={} throttled={} dropped={}", written.get(),
+                retried.get(), throttled.get(), dropped.get());
+    }
+
+    private void await(List<CompletableFuture<Void>> futures, Instant deadline) {
+        if (futures.isEmpty()) {
+            return;
+        }
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+                    .get(Math.max(1, Duration.between(Instant.now(), deadline).toMillis()), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            logger.warn("Not all queued items were written on shutdown: {} {}", e.getClass().getSimpleName(),
+                    e.getMessage());
+        }
+    }
+
+    /**
+     * Queues an item. If the queue is full, the oldest item is dropped.
+     *
+     * @param dto the item
+     */
+    public void add(DynamoDBItem<?> dto) {
+        while (!queue.offer(dto)) {
+            if (queue.poll() != null) {
+                long count = dropped.incrementAndGet();
+                if (count % 1000 == 1) {
+                    logger.warn("Write queue is full, {} items dropped so far", count);
+                }
+            }
+        }
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                List<DynamoDBItem<?>> batch;
+                int attempt;
+                RetryBatch retry = retries.poll();
+                if (retry != null) {
+                    batch = retry.items;
+                    attempt = retry.attempt;
+                } else {
+                    DynamoDBItem<?> first = queue.poll(BATCH_LINGER_MILLIS, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch = new ArrayList<>(MAX_BATCH_SIZE);
+                    batch.add(first);
+                    long lingerEnd = System.currentTimeMillis() + BATCH_LINGER_MILLIS;
+                    while (batch.size() < MAX_BATCH_SIZE) {
+                        long wait = lingerEnd - System.currentTimeMillis();
+                        DynamoDBItem<?> next = wait > 0 ? queue.poll(wait, TimeUnit.MILLISECONDS) : null;
+                        if (next == null) {
+                            break;
+                        }
+                        batch.add(next);
+                        queue.drainTo(batch, MAX_BATCH_SIZE - batch.size());
+                    }
+                    attempt = 0;
+                }
+                long delay = sendDelayMillis;
+                if (delay > 0) {
+                    Thread.sleep(delay);
+                }
+                sendGroupedByClass(batch, attempt);
+            } catch (InterruptedException e) {
+                // stop() writes the remaining items
+                return;
+            }
+        }
+    }
+
+    private List<CompletableFuture<Void>> sendGroupedByClass(List<DynamoDBItem<?>> batch, int attempt) {
+        // the enhanced client maps unprocessed items with the schema of one class per request
+        Map<Class<?>, List<DynamoDBItem<?>>> byClass = new LinkedHashMap<>();
+        for (DynamoDBItem<?> dto : batch) {
+            byClass.computeIfAbsent(dto.getClass(), clz -> new ArrayList<>()).add(dto);
+        }
+        List<CompletableFuture<Void>> futures = new ArrayList<>(byClass.size());
+        for (Map.Entry<Class<?>, List<DynamoDBItem<?>>> entry : byClass.entrySet()) {
+            if (entry.getKey().equals(DynamoDBBigDecimalItem.class)) {
+                futures.add(send(DynamoDBBigDecimalItem.class, entry.getValue(), attempt));
+            } else if (entry.getKey().equals(DynamoDBStringItem.class)) {
+                futures.add(send(DynamoDBStringItem.class, entry.getValue(), attempt));
+            } else {
+                throw new IllegalStateException("Unknown DTO class. Bug");
+            }
+        }
+        return futures;
+    }
+
+    private <T extends DynamoDBItem<?>> CompletableFuture<Void> send(Class<T> dtoClass,
+            List<DynamoDBItem<?>> items, int attempt) {
+        DynamoDbEnhancedAsyncClient client = service.getClient();
+        if (client == null) {
+            dropped.addAndGet(items.size());
+            logger.warn("Not connected, dropping {} items", items.size());
+            return CompletableFuture.completedFuture(null);
+        }
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            // stop() writes the items
+            retries.add(new RetryBatch(items, attempt, 0));
+            return CompletableFuture.completedFuture(null);
+        }
+        Instant start = Instant.now();
+        DynamoDbAsyncTable<T> table;
+        List<T> dtos = new ArrayList<>(items.size());
+        WriteBatch.Builder<T> writeBatch;
+        try {
+            table = service.getTable(dtoClass);
+            writeBatch = WriteBatch.builder(dtoClass).mappedTableResource(table);
+            // BatchWriteItem rejects a request with two puts of the same key, while single puts overwrite each other.
+            // All items of the request are in the same table, so the key is the item name and the timestamp in
+            // milliseconds, the resolution of both table schemas.
+            Map<String, T> byKey = new LinkedHashMap<>();
+            for (DynamoDBItem<?> item : items) {
+                T dto = dtoClass.cast(item);
+                byKey.put(dto.getName() + "@" + dto.getTime().toInstant().toEpochMilli(), dto);
+            }
+            if (byKey.size() < items.size()) {
+                logger.trace("BatchWriteItem: {} items overwritten by later items with the same key",
+                        items.size() - byKey.size());
+            }
+            for (T dto : byKey.values()) {
+                dtos.add(dto);
+                writeBatch.addPutItem(dto);
+            }
+        } catch (RuntimeException e) {
+            inFlight.release();
+            dropped.addAndGet(items.size());
+            logger.warn("BatchWriteItem: could not prepare request for {} items: {} {}", items.size(),
+                    e.getClass().getSimpleName(), e.getMessage());
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Void> request = client
+                .batchWriteItem(BatchWriteItemEnhancedRequest.builder().writeBatches(writeBatch.build()).build())
+                .handleAsync((result, exception) -> {
+                    inFlight.release();
+                    if (exception == null) {
+                        List<T> unprocessed = result.unprocessedPutItemsForTable(table);
+                        written.addAndGet(dtos.size() - unprocessed.size());
+                        if (unprocessed.isEmpty()) {
+                            speedUp();
+                        } else {
+                            slowDown();
+                            retry(new ArrayList<>(unprocessed), attempt);
+                        }
+                        logger.trace("BatchWriteItem: {} of {} items written in {} ms", dtos.size() - unprocessed.size(),
+                                dtos.size(), Duration.between(start, Instant.now()).toMillis());
+                        return CompletableFuture.<Void> completedFuture(null);
+                    }
+                    Throwable cause = exception instanceof CompletionException && exception.getCause() != null
+                            ? exception.getCause()
+                            : exception;
+                    if (cause instanceof ResourceNotFoundException) {
+                        logger.trace("BatchWriteItem: Table '{}' was not present. Writing items one by one, creating "
+                                + "the table first", table.tableName());
+                        return CompletableFuture.allOf(dtos.stream()
+                                .map(dto -> new TableCreatingPutItem<T>(service, dto, table).putItemAsync()
+                                        .thenRun(written::incrementAndGet).exceptionally(e -> {
+                                            dropped.incrementAndGet();
+                                            return null;
+                                        }))
+                                .toArray(CompletableFuture<?>[]::new));
+                    } else if (isThrottling(cause)) {
+                        throttled.incrementAndGet();
+                        slowDown();
+                        retry(new ArrayList<>(dtos), attempt);
+                    } else {
+                        dropped.addAndGet(dtos.size());
+                        logger.warn("BatchWriteItem: failed (final) with {} {}. Dropping {} items.",
+                                cause.getClass().getSimpleName(), cause.getMessage(), dtos.size());
+                    }
+                    return CompletableFuture.<Void> completedFuture(null);
+                }, executor).thenCompose(future -> future);
+        requests.add(request);
+        request.whenComplete((result, exception) -> requests.remove(request));
+        return request;
+    }
+
+    private static boolean isThrottling(@Nullable Throwable cause) {
+        return cause instanceof ProvisionedThroughputExceededException
+                || (cause instanceof SdkServiceException && ((SdkServiceException) cause).isThrottlingException());
+    }
+
+    private void retry(List<DynamoDBItem<?>> items, int attempt) {
+        int nextAttempt = attempt + 1;
+        if (nextAttempt >= MAX_ATTEMPTS) {
+            dropped.addAndGet(items.size());
+            logger.warn("BatchWriteItem: {} items not written after {} attempts. Dropping them.", items.size(),
+                    nextAttempt);
+            return;
+        }
+        retried.addAndGet(items.size());
+        // full jitter, so concurrent retries spread out. While stopping, stop() writes the retries without waiting.
+        long backoff = Math.min(MAX_BACKOFF_MILLIS, BASE_BACKOFF_MILLIS << Math.min(attempt, 20));
+        retries.add(new RetryBatch(items, nextAttempt, ThreadLocalRandom.current().nextLong(backoff + 1)));
+    }
+
+    private void slowDown() {
+        long delay = sendDelayMillis;
+        sendDelayMillis = Math.min(MAX_SEND_DELAY_MILLIS, Math.max(MIN_SEND_DELAY_MILLIS, delay * 2));
+        if (delay == 0) {
+            logger.debug("BatchWriteItem: throttled, slowing down");
+        }
+    }
+
+    private void speedUp() {
+        long delay = sendDelayMillis;
+        if (delay > 0) {
+            sendDelayMillis = delay / 2 < MIN_SEND_DELAY_MILLIS ? 0 : delay / 2;
+        }
+    }
+
+    /**
+     * @return number of items waiting to be sent, including items waiting for a retry
+     */
+    public int getQueuedItems() {
+        int count = queue.size();
+        for (RetryBatch retry : retries) {
+            count += retry.items.size();
+        }
+        return count;
+    }
+
+    public int getInFlightRequests() {
+        return MAX_IN_FLIGHT - inFlight.availablePermits();
+    }
+
+    public long getSendDelayMillis() {
+        return sendDelayMillis;
+    }
+
+    public long getWrittenItems() {
+        return written.get();
+    }
+
+    public long getRetriedItems() {
+        return retried.get();
+    }
+
+    public long getThrottledRequests() {
+        return throttled.get();
+    }
+
+    public long getDroppedItems() {
+        return dropped.get();
+    }
+}
@@ -116,6 +116,7 @@ public class DynamoDBPersistenceService implements QueryablePersistenceService {
             2);
 
     private @Nullable URI endpointOverride;
+    private @Nullable DynamoDBBatchWriter batchWriter;
 
     void overrideConfig(AwsRequestOverrideConfiguration.Builder config) {
         config.apiCallAttemptTimeout(TIMEOUT_API_CALL_ATTEMPT).apiCallTimeout(TIMEOUT_API_CALL);
@@ -150,6 +151,11 @@ public class DynamoDBPersistenceService implements QueryablePersistenceService {
         return endpointOverride;
     }
 
+    @Nullable
+    DynamoDbEnhancedAsyncClient getClient() {
+        return client;
+    }
+
     @Nullable
     DynamoDbAsyncClient getLowLevelClient() {
         return lowLevelClient;
@@ -190,6 +196,10 @@ public class DynamoDBPersistenceService implements QueryablePersistenceService {
             return;
         }
 
+        DynamoDBBatchWriter localBatchWriter = new DynamoDBBatchWriter(this);
+        localBatchWriter.start();
+        batchWriter = localBatchWriter;
+
         isProperlyConfigured = true;
         logger.debug("dynamodb persistence service activated");
     }
@@ -269,7 +279,7 @@ public class DynamoDBPersistenceService implements QueryablePersistenceService {
         }
     }
 
-    private <T extends DynamoDBItem<?>> DynamoDbAsyncTable<T> getTable(Class<T> dtoClass) {
+    <T extends DynamoDBItem<?>> DynamoDbAsyncTable<T> getTable(Class<T> dtoClass) {
         DynamoDbEnhancedAsyncClient localClient = client;
         DynamoDBTableNameResolver localTableNameResolver = tableNameResolver;
         if (!ensureClient() || localClient == null || localTableNameResolver == null) {
@@ -309,6 +319,12 @@ public class DynamoDBPersistenceService implements QueryablePersistenceService {
     }
 
     private void disconnect() {
+        DynamoDBBatchWriter localBatchWriter = batchWriter;
+        batchWriter = null;
+        if (localBatchWriter != null) {
+            // write queued items while the client is still open
+            localBatchWriter.stop();
+        }
         DynamoDbAsyncClient localLowLevelClient = lowLevelClient;
         if (client == null || localLowLevelClient == null) {
             return;
@@ -529,8 +545,9 @@ public class DynamoDBPersistenceService implements QueryablePersistenceService {
             DynamoDbAsyncClient localLowlevelClient = lowLevelClient;
             DynamoDBConfig localConfig = dbConfig;
             DynamoDBTableNameResolver localTableNameResolver = tableNameResolver;
+            DynamoDBBatchWriter localBatchWriter = batchWriter;
             if (!isProperlyConfigured || localClient == null || localLowlevelClient == null || localConfig == null
-                    || localTableNameResolver == null) {
+                    || localTableNameResolver == null || localBatchWriter == null) {
                 logger.warn("Not ready to store (config error?), not storing item {}.", item.getName());
                 return;
             }
@@ -550,21 +567,8 @@ public class DynamoDBPersistenceService implements QueryablePersistenceService {
             }
             logger.trace("store() called with item {} {} '{}', which was converted to DTO {}",
                     copiedItem.getClass().getSimpleName(), effectiveName, copiedItem.getState(), dto);
-            dto.accept(new DynamoDBItemVisitor<TableCreatingPutItem<? extends DynamoDBItem<?>>>() {
-
-                @Override
-                public TableCreatingPutItem<? extends DynamoDBItem<?>> visit(
-                        DynamoDBBigDecimalItem dynamoBigDecimalItem) {
-                    return new TableCreatingPutItem<DynamoDBBigDecimalItem>(DynamoDBPersistenceService.this,
-                            dynamoBigDecimalItem, getTable(DynamoDBBigDecimalItem.class));
-                }
-
-                @Override
-                public TableCreatingPutItem<? extends DynamoDBItem<?>> visit(DynamoDBStringItem dynamoStringItem) {
-                    return new TableCreatingPutItem<DynamoDBStringItem>(DynamoDBPersistenceService.this,
-                            dynamoStringItem, getTable(DynamoDBStringItem.class));
-                }
-            }).putItemAsync();
+            // written with the next BatchWriteItem request, which also creates the table if needed
+            localBatchWriter.add(dto);
         }, executor).exceptionally(e -> {
             logger.error("Unexcepted error", e);
             return null;
@@ -655,6 +659,15 @@ public class DynamoDBPersistenceService implements QueryablePersistenceService {
                         localExecutor.getQueue().size());
             }
         }
+        DynamoDBBatchWriter localBatchWriter = batchWriter;
+        if (localBatchWriter != null && logger.isTraceEnabled()) {
+            logger.trace(
+                    "batch writer: queued items {}, in-flight requests {}, send delay {} ms, written {}, retried {}, throttled requests {}, dropped {}",
+                    localBatchWriter.getQueuedItems(), localBatchWriter.getInFlightRequests(),
+                    localBatchWriter.getSendDelayMillis(), localBatchWriter.getWrittenItems(),
+                    localBatchWriter.getRetriedItems(), localBatchWriter.getThrottledRequests(),
+                    localBatchWriter.getDroppedItems());
+        }
     }
 
     private String filterToString(FilterCriteria filter) {
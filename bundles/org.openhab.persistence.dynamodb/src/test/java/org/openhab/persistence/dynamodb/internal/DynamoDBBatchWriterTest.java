@@ -0,0 +1,235 @@
+/**
+ * Copyright (c) 2010-2021 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.persistence.dynamodb.internal;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.eclipse.jdt.annotation.DefaultLocation;
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openhab.core.test.java.JavaTest;
+
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbAsyncTable;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedAsyncClient;
+import software.amazon.awssdk.enhanced.dynamodb.model.BatchWriteItemEnhancedRequest;
+import software.amazon.awssdk.enhanced.dynamodb.model.BatchWriteResult;
+import software.amazon.awssdk.enhanced.dynamodb.model.WriteBatch;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
+import software.amazon.awssdk.services.dynamodb.model.ProvisionedThroughputExceededException;
+import software.amazon.awssdk.services.dynamodb.model.PutRequest;
+import software.amazon.awssdk.services.dynamodb.model.ResourceNotFoundException;
+import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
+
+/**
+ * Tests {@link DynamoDBBatchWriter} against a mocked client, which answers the BatchWriteItem requests with the
+ * responses queued by the test and processes all items once the queue is empty.
+ *
+ * @author craigham - Initial contribution
+ */
+@SuppressWarnings("null") // In case of any NPE it will cause test fail that it's the expected result
+@NonNullByDefault(value = { DefaultLocation.PARAMETER, DefaultLocation.RETURN_TYPE })
+public class DynamoDBBatchWriterTest extends JavaTest {
+
+    private static final String TABLE = "openhab";
+
+    private ExecutorService executor;
+    private DynamoDBPersistenceService service;
+    private DynamoDbAsyncTable<DynamoDBBigDecimalItem> table;
+    private DynamoDBBatchWriter writer;
+    private final List<List<DynamoDBBigDecimalItem>> requests = new CopyOnWriteArrayList<>();
+    private final Queue<Response> responses = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Answers a BatchWriteItem request with the items of the request.
+     */
+    private interface Response extends Function<List<DynamoDBBigDecimalItem>, CompletableFuture<BatchWriteResult>> {
+    }
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        executor = Executors.newCachedThreadPool();
+        service = mock(DynamoDBPersistenceService.class);
+        DynamoDbEnhancedAsyncClient client = mock(DynamoDbEnhancedAsyncClient.class);
+        table = mock(DynamoDbAsyncTable.class);
+        when(service.getClient()).thenReturn(client);
+        when(service.getExecutor()).thenReturn(executor);
+        when(service.getTable(DynamoDBBigDecimalItem.class)).thenReturn(table);
+        when(table.tableName()).thenReturn(TABLE);
+        when(table.tableSchema()).thenReturn(DynamoDBBigDecimalItem.TABLE_SCHEMA_NEW);
+        when(client.batchWriteItem(any(BatchWriteItemEnhancedRequest.class))).thenAnswer(invocation -> {
+            BatchWriteItemEnhancedRequest request = invocation.getArgument(0);
+            List<DynamoDBBigDecimalItem> items = new ArrayList<>();
+            for (WriteBatch batch : request.writeBatches()) {
+                for (WriteRequest writeRequest : batch.writeRequests()) {
+                    items.add(DynamoDBBigDecimalItem.TABLE_SCHEMA_NEW.mapToItem(writeRequest.putRequest().item()));
+                }
+            }
+            requests.add(items);
+            Response response = responses.poll();
+            return response == null ? CompletableFuture.completedFuture(processed()) : response.apply(items);
+        });
+        writer = new DynamoDBBatchWriter(service);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        writer.stop();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void unprocessedItemsAreRetried() {
+        responses.add(items -> CompletableFuture.completedFuture(unprocessed(items.subList(0, 2))));
+        writer.add(createItem("a", 1, 1));
+        writer.add(createItem("b", 2, 1));
+        writer.add(createItem("c", 3, 1));
+        writer.start();
+
+        waitForAssert(() -> assertEquals(3, writer.getWrittenItems()));
+        assertEquals(2, requests.size());
+        assertEquals(List.of("a", "b", "c"), names(requests.get(0)));
+        assertEquals(List.of("a", "b"), names(requests.get(1)));
+        assertEquals(2, writer.getRetriedItems());
+        assertEquals(0, writer.getDroppedItems());
+    }
+
+    @Test
+    public void throttlingSlowsDownUntilRequestsAreProcessed() {
+        AtomicLong delayOnRetry = new AtomicLong(-1);
+        responses.add(items -> CompletableFuture
+                .failedFuture(ProvisionedThroughputExceededException.builder().message("throttled").build()));
+        responses.add(items -> {
+            delayOnRetry.set(writer.getSendDelayMillis());
+            return CompletableFuture.completedFuture(processed());
+        });
+        writer.add(createItem("a", 1, 1));
+        writer.add(createItem("b", 2, 1));
+        writer.start();
+
+        waitForAssert(() -> assertEquals(2, writer.getWrittenItems()));
+        assertEquals(2, requests.size());
+        assertTrue(delayOnRetry.get() > 0);
+        waitForAssert(() -> assertEquals(0, writer.getSendDelayMillis()));
+        assertEquals(1, writer.getThrottledRequests());
+        assertEquals(2, writer.getRetriedItems());
+        assertEquals(0, writer.getDroppedItems());
+    }
+
+    @Test
+    public void missingTableIsCreatedByPutItem() {
+        when(service.getLowLevelClient()).thenReturn(mock(DynamoDbAsyncClient.class));
+        when(service.getDbConfig()).thenReturn(mock(DynamoDBConfig.class));
+        when(service.getTableNameResolver())
+                .thenReturn(new DynamoDBTableNameResolver(ExpectedTableSchema.NEW, TABLE, ""));
+        when(table.putItem(any(DynamoDBBigDecimalItem.class))).thenReturn(CompletableFuture.completedFuture(null));
+        responses.add(items -> CompletableFuture
+                .failedFuture(ResourceNotFoundException.builder().message("table not found").build()));
+        writer.add(createItem("a", 1, 1));
+        writer.add(createItem("b", 2, 1));
+        writer.start();
+
+        waitForAssert(() -> assertEquals(2, writer.getWrittenItems()));
+        assertEquals(1, requests.size());
+        verify(table, times(2)).putItem(any(DynamoDBBigDecimalItem.class));
+        assertEquals(0, writer.getDroppedItems());
+    }
+
+    @Test
+    public void stopWritesQueuedAndRetriedItems() throws InterruptedException {
+        CountDownLatch sending = new CountDownLatch(1);
+        responses.add(items -> {
+            sending.countDown();
+            try {
+                // blocks the dispatcher until stop() interrupts it
+                new CountDownLatch(1).await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return CompletableFuture.completedFuture(unprocessed(items));
+        });
+        writer.start();
+        writer.add(createItem("a", 1, 1));
+        assertTrue(sending.await(5, TimeUnit.SECONDS));
+        writer.add(createItem("b", 2, 1));
+        writer.add(createItem("c", 3, 1));
+        writer.stop();
+
+        assertEquals(2, requests.size());
+        assertEquals(List.of("a", "b", "c"), names(requests.get(1)).stream().sorted().collect(Collectors.toList()));
+        assertEquals(3, writer.getWrittenItems());
+        assertEquals(0, writer.getQueuedItems());
+        assertEquals(0, writer.getDroppedItems());
+    }
+
+    @Test
+    public void itemsWithTheSameKeyAreWrittenOnce() {
+        writer.add(createItem("a", 1, 1));
+        writer.add(createItem("b", 2, 1));
+        writer.add(createItem("a", 3, 1));
+        writer.start();
+
+        waitForAssert(() -> assertEquals(2, writer.getWrittenItems()));
+        assertEquals(1, requests.size());
+        List<DynamoDBBigDecimalItem> items = requests.get(0);
+        assertEquals(List.of("a", "b"), names(items));
+        assertEquals(0, BigDecimal.valueOf(3).compareTo(items.get(0).getState()));
+        assertEquals(0, writer.getDroppedItems());
+    }
+
+    private static DynamoDBBigDecimalItem createItem(String name, long state, long time) {
+        return new DynamoDBBigDecimalItem(name, BigDecimal.valueOf(state),
+                ZonedDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneOffset.UTC), null);
+    }
+
+    private static List<String> names(List<DynamoDBBigDecimalItem> items) {
+        return items.stream().map(DynamoDBBigDecimalItem::getName).collect(Collectors.toList());
+    }
+
+    private static BatchWriteResult processed() {
+        return BatchWriteResult.builder().unprocessedRequests(Collections.emptyMap()).build();
+    }
+
+    private static BatchWriteResult unprocessed(List<DynamoDBBigDecimalItem> items) {
+        List<WriteRequest> writeRequests = items.stream()
+                .map(item -> WriteRequest.builder()
+                        .putRequest(PutRequest.builder()
+                                .item(DynamoDBBigDecimalItem.TABLE_SCHEMA_NEW.itemToMap(item, true)).build())
+                        .build())
+                .collect(Collectors.toList());
+        return BatchWriteResult.builder().unprocessedRequests(Collections.singletonMap(TABLE, writeRequests)).build();
+    }
+}
@@ -12,21 +12,37 @@
  */
 package org.openhab.persistence.influxdb;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.core.OpenHAB;
+import org.openhab.core.common.NamedThreadFactory;
 import org.openhab.core.config.core.ConfigurableService;
+import org.openhab.core.items.GroupItem;
 import org.openhab.core.items.Item;
+import org.openhab.core.items.ItemNotFoundException;
 import org.openhab.core.items.ItemRegistry;
 import org.openhab.core.items.MetadataRegistry;
+import org.openhab.core.library.items.NumberItem;
+import org.openhab.core.library.types.StringType;
 import org.openhab.core.persistence.FilterCriteria;
 import org.openhab.core.persistence.HistoricItem;
 import org.openhab.core.persistence.PersistenceItemInfo;
@@ -35,10 +51,13 @@ import org.openhab.core.persistence.QueryablePersistenceService;
 import org.openhab.core.persistence.strategy.PersistenceStrategy;
 import org.openhab.core.types.State;
 import org.openhab.persistence.influxdb.internal.FilterCriteriaQueryCreator;
+import org.openhab.persistence.influxdb.internal.InfluxDBAggregation;
+import org.openhab.persistence.influxdb.internal.InfluxDBBatchWriter;
 import org.openhab.persistence.influxdb.internal.InfluxDBConfiguration;
 import org.openhab.persistence.influxdb.internal.InfluxDBHistoricItem;
 import org.openhab.persistence.influxdb.internal.InfluxDBPersistentItemInfo;
 import org.openhab.persistence.influxdb.internal.InfluxDBRepository;
+import org.openhab.persistence.influxdb.internal.InfluxDBSpool;
 import org.openhab.persistence.influxdb.internal.InfluxDBStateConvertUtils;
 import org.openhab.persistence.influxdb.internal.InfluxPoint;
 import org.openhab.persistence.influxdb.internal.InfluxRow;
@@ -84,6 +103,9 @@ public class InfluxDBPersistenceService implements QueryablePersistenceService {
 
     protected static final String CONFIG_URI = "persistence:influxdb";
 
+    private static final int SPOOL_CHECK_INTERVAL_SECONDS = 30;
+    private static final int SPOOL_REPLAY_BATCH_SIZE = 5000;
+
     // External dependencies
     private final ItemRegistry itemRegistry;
     private final MetadataRegistry metadataRegistry;
@@ -94,6 +116,12 @@ public class InfluxDBPersistenceService implements QueryablePersistenceService {
     // Relax rules because can only be null if component is not active
     private @NonNullByDefault({}) ItemToStorePointCreator itemToStorePointCreator;
     private @NonNullByDefault({}) InfluxDBRepository influxDBRepository;
+    private @NonNullByDefault({}) InfluxDBBatchWriter batchWriter;
+
+    // Only set if spooling is enabled
+    private @Nullable InfluxDBSpool spool;
+    private @Nullable ScheduledExecutorService spoolScheduler;
+    private volatile boolean databaseAvailable = false;
 
     @Activate
     public InfluxDBPersistenceService(final @Reference ItemRegistry itemRegistry,
@@ -112,7 +140,9 @@ public class InfluxDBPersistenceService implements QueryablePersistenceService {
         if (loadConfiguration(config)) {
             itemToStorePointCreator = new ItemToStorePointCreator(configuration, metadataRegistry);
             influxDBRepository = createInfluxDBRepository();
-            influxDBRepository.connect();
+            databaseAvailable = influxDBRepository.connect();
+            startSpool();
+            startBatchWriter();
         } else {
             logger.error("Cannot load configuration, persistence service wont work");
         }
@@ -131,6 +161,11 @@ public class InfluxDBPersistenceService implements QueryablePersistenceService {
     @Deactivate
     public void deactivate() {
         logger.debug("InfluxDB persistence service deactivated");
+        if (batchWriter != null) {
+            batchWriter.stop();
+            batchWriter = null;
+        }
+        stopSpool();
         if (influxDBRepository != null) {
             influxDBRepository.disconnect();
             influxDBRepository = null;
@@ -140,6 +175,89 @@ public class InfluxDBPersistenceService implements QueryablePersistenceService {
         }
     }
 
+    private void startSpool() {
+        if (configuration.getSpoolSize() <= 0) {
+            return;
+        }
+        Path directory = Path.of(OpenHAB.getUserDataFolder(), "persistence", "influxdb", "spool");
+        try {
+            spool = new InfluxDBSpool(directory, configuration.getSpoolSize() * 1024L * 1024L);
+        } catch (IOException e) {
+            logger.warn("Cannot create spool in {}, points are dropped while InfluxDB is unavailable: {}", directory,
+                    e.getMessage());
+            return;
+        }
+        ScheduledExecutorService scheduler = Executors
+                .newSingleThreadScheduledExecutor(new NamedThreadFactory("influxdb-spool"));
+        scheduler.scheduleWithFixedDelay(this::checkSpool, SPOOL_CHECK_INTERVAL_SECONDS,
+                SPOOL_CHECK_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        spoolScheduler = scheduler;
+    }
+
+    private void startBatchWriter() {
+        final InfluxDBRepository repository = influxDBRepository;
+        final InfluxDBSpool currentSpool = spool;
+        // without a spool the writer retries failed batches, dropping the oldest points when its buffer is full
+        @Nullable
+        Consumer<List<InfluxPoint>> failedPointsHandler = currentSpool == null ? null : points -> {
+            databaseAvailable = false;
+            logger.warn("Writing {} points failed, spooling them until InfluxDB is available", points.size());
+            points.forEach(point -> spoolPoint(currentSpool, point));
+        };
+        batchWriter = new InfluxDBBatchWriter(points -> repository.write(points), failedPointsHandler,
+                configuration.getBatchSize(), configuration.getFlushInterval(), configuration.getFlushJitter(),
+                configuration.getMaxBufferedPoints());
+        batchWriter.start();
+    }
+
+    private void spoolPoint(InfluxDBSpool currentSpool, InfluxPoint point) {
+        try {
+            currentSpool.append(point);
+        } catch (IOException e) {
+            logger.warn("Cannot spool point {}: {}", point, e.getMessage());
+        }
+    }
+
+    private void stopSpool() {
+        ScheduledExecutorService scheduler = spoolScheduler;
+        spoolScheduler = null;
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            try {
+                scheduler.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        InfluxDBSpool currentSpool = spool;
+        spool = null;
+        if (currentSpool != null) {
+            currentSpool.close();
+        }
+    }
+
+    /**
+     * Check if the database is available and write the spooled points if it is
+     */
+    private void checkSpool() {
+        InfluxDBRepository repository = influxDBRepository;
+        InfluxDBSpool currentSpool = spool;
+        if (repository == null || currentSpool == null) {
+            return;
+        }
+        databaseAvailable = repository.checkConnectionStatus();
+        // points stored while replaying are spooled too, so the spool is drained until it is empty
+        while (databaseAvailable && !currentSpool.isEmpty()) {
+            long size = currentSpool.getSize();
+            if (currentSpool.replay(points -> repository.write(points), SPOOL_REPLAY_BATCH_SIZE)) {
+                logger.info("Wrote {} spooled bytes to InfluxDB", size);
+            } else {
+                logger.warn("Writing spooled points failed, will retry in {} seconds", SPOOL_CHECK_INTERVAL_SECONDS);
+                databaseAvailable = false;
+            }
+        }
+    }
+
     /**
      * Rerun deactivation/activation code each time configuration is changed
      */
@@ -204,11 +322,16 @@ public class InfluxDBPersistenceService implements QueryablePersistenceService {
     public void store(Item item, @Nullable String alias) {
         if (influxDBRepository != null && influxDBRepository.isConnected()) {
             InfluxPoint point = itemToStorePointCreator.convert(item, alias);
-            if (point != null) {
-                logger.trace("Storing item {} in InfluxDB point {}", item, point);
-                influxDBRepository.write(point);
-            } else {
+            InfluxDBSpool currentSpool = spool;
+            if (point == null) {
                 logger.trace("Ignoring item {} as is cannot be converted to a InfluxDB point", item);
+            } else if (currentSpool != null && (!databaseAvailable || !currentSpool.isEmpty())) {
+                // keep the order of points, new points are spooled until the spool has been written
+                logger.trace("Spooling item {} in InfluxDB point {}", item, point);
+                spoolPoint(currentSpool, point);
+            } else {
+                logger.trace("Storing item {} in InfluxDB point {}", item, point);
+                batchWriter.add(point);
             }
         } else {
             logger.debug("store ignored, InfluxDB is not yet connected");
@@ -217,6 +340,31 @@ public class InfluxDBPersistenceService implements QueryablePersistenceService {
 
     @Override
     public Iterable<HistoricItem> query(FilterCriteria filter) {
+        return doQuery(filter, null, null);
+    }
+
+    /**
+     * Queries one aggregated value per time window. The values are aggregated by InfluxDB, so only one row per window
+     * is transferred. Windows without values are left out.
+     *
+     * @param filter the filter criteria, paging applies to the windows
+     * @param window the length of the time windows
+     * @param aggregation the function applied to the values of each window, {@link InfluxDBAggregation#LAST} is used
+     *            for items that are not number items
+     * @return the aggregated values, with the start of the window (InfluxDB 1) or the end of the window (InfluxDB 2)
+     *         as timestamp
+     */
+    public Iterable<HistoricItem> query(FilterCriteria filter, Duration window, InfluxDBAggregation aggregation) {
+        String itemName = filter.getItemName();
+        if (aggregation != InfluxDBAggregation.LAST && itemName != null && !isNumberItem(itemName)) {
+            logger.warn("Aggregation {} is not supported for item '{}', using LAST", aggregation, itemName);
+            aggregation = InfluxDBAggregation.LAST;
+        }
+        return doQuery(filter, window, aggregation);
+    }
+
+    private Iterable<HistoricItem> doQuery(FilterCriteria filter, @Nullable Duration window,
+            @Nullable InfluxDBAggregation aggregation) {
         logger.debug("Got a query for historic points!");
 
         if (influxDBRepository != null && influxDBRepository.isConnected()) {
@@ -225,21 +373,52 @@ public class InfluxDBPersistenceService implements QueryablePersistenceService {
                     filter.getItemName(), filter.getOrdering().toString(), filter.getState(), filter.getOperator(),
                     filter.getBeginDate(), filter.getEndDate(), filter.getPageSize(), filter.getPageNumber());
 
-            String query = RepositoryFactory.createQueryCreator(configuration, metadataRegistry).createQuery(filter,
-                    configuration.getRetentionPolicy());
+            FilterCriteriaQueryCreator queryCreator = RepositoryFactory.createQueryCreator(configuration,
+                    metadataRegistry);
+            String query = window != null && aggregation != null
+                    ? queryCreator.createAggregatedQuery(filter, configuration.getRetentionPolicy(), window,
+                            aggregation)
+                    : queryCreator.createQuery(filter, configuration.getRetentionPolicy());
             logger.trace("Query {}", query);
-            List<InfluxRow> results = influxDBRepository.query(query);
-            return results.stream().map(this::mapRow2HistoricItem).collect(Collectors.toList());
+
+            // rows are converted while they are read, items are looked up once per query and not once per row
+            List<HistoricItem> result = new ArrayList<>();
+            Map<String, Optional<Item>> items = new HashMap<>();
+            ZoneId zoneId = ZoneId.systemDefault();
+            influxDBRepository.query(query, row -> {
+                @Nullable
+                Item item = items.computeIfAbsent(row.getItemName(), this::findItem).orElse(null);
+                result.add(mapRow2HistoricItem(row, item, zoneId));
+            });
+            return result;
         } else {
             logger.debug("query ignored, InfluxDB is not yet connected");
             return Collections.emptyList();
         }
     }
 
-    private HistoricItem mapRow2HistoricItem(InfluxRow row) {
-        State state = InfluxDBStateConvertUtils.objectToState(row.getValue(), row.getItemName(), itemRegistry);
-        return new InfluxDBHistoricItem(row.getItemName(), state,
-                ZonedDateTime.ofInstant(row.getTime(), ZoneId.systemDefault()));
+    private boolean isNumberItem(String itemName) {
+        Item item = findItem(itemName).orElse(null);
+        if (item instanceof GroupItem) {
+            // the base item determines the type of the values
+            item = ((GroupItem) item).getBaseItem();
+        }
+        return item instanceof NumberItem;
+    }
+
+    private Optional<Item> findItem(String itemName) {
+        try {
+            return Optional.of(itemRegistry.getItem(itemName));
+        } catch (ItemNotFoundException e) {
+            logger.info("Could not find item '{}' in registry", itemName);
+            return Optional.empty();
+        }
+    }
+
+    private HistoricItem mapRow2HistoricItem(InfluxRow row, @Nullable Item item, ZoneId zoneId) {
+        State state = item != null ? InfluxDBStateConvertUtils.objectToState(row.getValue(), item)
+                : new StringType(String.valueOf(row.getValue()));
+        return new InfluxDBHistoricItem(row.getItemName(), state, ZonedDateTime.ofInstant(row.getTime(), zoneId));
     }
 
     @Override
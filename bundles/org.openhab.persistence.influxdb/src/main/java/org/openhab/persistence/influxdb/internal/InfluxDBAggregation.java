@@ -0,0 +1,45 @@
+/**
+ * Copyright (c) 2010-2021 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.persistence.influxdb.internal;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+
+/**
+ * Aggregation functions for downsampled queries, evaluated by InfluxDB for each time window
+ *
+ * @author craigham - Initial contribution
+ */
+@NonNullByDefault
+public enum InfluxDBAggregation {
+    /** average of the values, for number items only */
+    MEAN("mean"),
+    /** minimum of the values, for number items only */
+    MIN("min"),
+    /** maximum of the values, for number items only */
+    MAX("max"),
+    /** last value, for all item types */
+    LAST("last");
+
+    private final String functionName;
+
+    InfluxDBAggregation(String functionName) {
+        this.functionName = functionName;
+    }
+
+    /**
+     * @return the name of the function, which is the same in InfluxQL and Flux
+     */
+    public String getFunctionName() {
+        return functionName;
+    }
+}
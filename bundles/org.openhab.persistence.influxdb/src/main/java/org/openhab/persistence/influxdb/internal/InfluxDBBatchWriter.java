@@ -0,0 +1,246 @@
+/**
+ * Copyright (c) 2010-2021 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.persistence.influxdb.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.core.common.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Buffers points and writes them in batches, independent of the InfluxDB version.
+ *
+ * A batch is written by a single background thread as soon as <code>batchSize</code> points are buffered or
+ * <code>flushInterval</code> (plus a random delay of up to <code>flushJitter</code>) has passed. If the buffer holds
+ * <code>maxBufferedPoints</code>, the oldest points are dropped.
+ *
+ * A batch that could not be written is passed to the failed points handler if there is one, otherwise it is kept and
+ * retried with the next flush.
+ *
+ * @author craigham - Initial contribution
+ */
+@NonNullByDefault
+public class InfluxDBBatchWriter {
+    private final Logger logger = LoggerFactory.getLogger(InfluxDBBatchWriter.class);
+
+    private final Predicate<List<InfluxPoint>> writer;
+    private final @Nullable Consumer<List<InfluxPoint>> failedPointsHandler;
+    private final int batchSize;
+    private final int flushInterval;
+    private final int flushJitter;
+    private final BlockingQueue<InfluxPoint> queue;
+
+    // only accessed by the writer thread
+    private List<InfluxPoint> pending = new ArrayList<>();
+
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+
+    private volatile boolean running = false;
+    private @Nullable Thread worker;
+
+    /**
+     * @param writer writes a batch of points and returns <code>true</code> on success
+     * @param failedPointsHandler receives batches that could not be written, <code>null</code> to retry them
+     */
+    public InfluxDBBatchWriter(Predicate<List<InfluxPoint>> writer,
+            @Nullable Consumer<List<InfluxPoint>> failedPointsHandler, int batchSize, int flushInterval,
+            int flushJitter, int maxBufferedPoints) {
+        this.writer = writer;
+        this.failedPointsHandler = failedPointsHandler;
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.flushJitter = flushJitter;
+        this.queue = new ArrayBlockingQueue<>(maxBufferedPoints);
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        Thread thread = new NamedThreadFactory("influxdb-writer").newThread(this::run);
+        worker = thread;
+        thread.start();
+        logger.debug("Batch writer started: batchSize={} flushInterval={} ms flushJitter={} ms", batchSize,
+                flushInterval, flushJitter);
+    }
+
+    /**
+     * Stops the background thread, which makes a last attempt to write all buffered points. Points that could not be
+     * written are passed to the failed points handler if there is one, otherwise they are dropped.
+     *
+     * If the background thread does not stop in time, because it is still writing, the points in the buffer are
+     * passed on right away. The background thread handles the points it holds when the write returns.
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        Thread thread = worker;
+        worker = null;
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join(flushInterval + flushJitter + 5000L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (thread.isAlive()) {
+                List<InfluxPoint> remaining = new ArrayList<>();
+                queue.drainTo(remaining);
+                logger.warn("Batch writer did not stop in time, passing on {} buffered points", remaining.size());
+                handleFailed(remaining);
+            }
+        }
+        logger.debug("Batch writer stopped: written={} dropped={} retried={}", written.get(), dropped.get(),
+                retried.get());
+    }
+
+    /**
+     * Buffers a point. If the buffer is full, the oldest point is dropped.
+     *
+     * @param point the point
+     */
+    public void add(InfluxPoint point) {
+        while (!queue.offer(point)) {
+            if (queue.poll() != null) {
+                long count = dropped.incrementAndGet();
+                if (count % 1000 == 1) {
+                    logger.warn("Write buffer is full, {} points dropped so far", count);
+                }
+            }
+        }
+    }
+
+    private void run() {
+        boolean retry = false;
+        while (running) {
+            try {
+                long deadline = System.currentTimeMillis() + flushInterval
+                        + (flushJitter > 0 ? ThreadLocalRandom.current().nextInt(flushJitter + 1) : 0);
+                if (retry) {
+                    Thread.sleep(Math.max(1, deadline - System.currentTimeMillis()));
+                }
+                while (pending.size() < batchSize) {
+                    long wait = deadline - System.currentTimeMillis();
+                    if (wait <= 0) {
+                        break;
+                    }
+                    InfluxPoint point = queue.poll(wait, TimeUnit.MILLISECONDS);
+                    if (point == null) {
+                        break;
+                    }
+                    pending.add(point);
+                    queue.drainTo(pending, batchSize - pending.size());
+                }
+            } catch (InterruptedException e) {
+                break;
+            }
+            retry = !pending.isEmpty() && !flush();
+        }
+        // the interrupt of stop() must not abort the last write
+        Thread.interrupted();
+        List<InfluxPoint> remaining = pending;
+        pending = new ArrayList<>();
+        queue.drainTo(remaining);
+        for (int from = 0; from < remaining.size(); from += batchSize) {
+            List<InfluxPoint> batch = remaining.subList(from, Math.min(remaining.size(), from + batchSize));
+            if (!write(batch)) {
+                handleFailed(new ArrayList<>(remaining.subList(from, remaining.size())));
+                break;
+            }
+        }
+    }
+
+    private void handleFailed(List<InfluxPoint> failed) {
+        if (failed.isEmpty()) {
+            return;
+        }
+        Consumer<List<InfluxPoint>> handler = failedPointsHandler;
+        if (handler != null) {
+            handler.accept(failed);
+        } else {
+            dropped.addAndGet(failed.size());
+            logger.warn("Dropped {} buffered points that could not be written on shutdown", failed.size());
+        }
+    }
+
+    /**
+     * @return <code>false</code> if the batch has to be retried
+     */
+    private boolean flush() {
+        List<InfluxPoint> batch = pending;
+        pending = new ArrayList<>(batchSize);
+        if (write(batch)) {
+            return true;
+        }
+        Consumer<List<InfluxPoint>> handler = failedPointsHandler;
+        if (handler != null) {
+            handler.accept(batch);
+            return true;
+        } else {
+            // retried after the next flush interval, new points wait in the queue until then
+            retried.addAndGet(batch.size());
+            pending = batch;
+            return false;
+        }
+    }
+
+    private boolean write(List<InfluxPoint> batch) {
+        long timerStart = System.currentTimeMillis();
+        boolean success;
+        try {
+            success = writer.test(batch);
+        } catch (RuntimeException e) {
+            logger.warn("Writing {} points failed: {}", batch.size(), e.getMessage());
+            success = false;
+        }
+        if (success) {
+            written.addAndGet(batch.size());
+            logger.trace("Wrote {} points in {} ms, buffered={} written={} dropped={} retried={}", batch.size(),
+                    System.currentTimeMillis() - timerStart, queue.size(), written.get(), dropped.get(),
+                    retried.get());
+        }
+        return success;
+    }
+
+    public int getBufferedPoints() {
+        return queue.size();
+    }
+
+    public long getWritten() {
+        return written.get();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public long getRetried() {
+        return retried.get();
+    }
+}
@@ -40,6 +40,12 @@ public class InfluxDBConfiguration {
     public static final String ADD_CATEGORY_TAG_PARAM = "addCategoryTag";
     public static final String ADD_LABEL_TAG_PARAM = "addLabelTag";
     public static final String ADD_TYPE_TAG_PARAM = "addTypeTag";
+    public static final String SPOOL_SIZE_PARAM = "spoolSize";
+    public static final String BATCH_SIZE_PARAM = "batchSize";
+    public static final String FLUSH_INTERVAL_PARAM = "flushInterval";
+    public static final String FLUSH_JITTER_PARAM = "flushJitter";
+    public static final String MAX_BUFFERED_POINTS_PARAM = "maxBufferedPoints";
+    public static final String GZIP_PARAM = "gzip";
     public static InfluxDBConfiguration NO_CONFIGURATION = new InfluxDBConfiguration(Collections.emptyMap());
     private final Logger logger = LoggerFactory.getLogger(InfluxDBConfiguration.class);
     private final String url;
@@ -54,6 +60,12 @@ public class InfluxDBConfiguration {
     private final boolean addCategoryTag;
     private final boolean addTypeTag;
     private final boolean addLabelTag;
+    private final int spoolSize;
+    private final int batchSize;
+    private final int flushInterval;
+    private final int flushJitter;
+    private final int maxBufferedPoints;
+    private final boolean gzip;
 
     public InfluxDBConfiguration(Map<String, Object> config) {
         url = (String) config.getOrDefault(URL_PARAM, "http://127.0.0.1:8086");
@@ -68,6 +80,12 @@ public class InfluxDBConfiguration {
         addCategoryTag = getConfigBooleanValue(config, ADD_CATEGORY_TAG_PARAM, false);
         addLabelTag = getConfigBooleanValue(config, ADD_LABEL_TAG_PARAM, false);
         addTypeTag = getConfigBooleanValue(config, ADD_TYPE_TAG_PARAM, false);
+        spoolSize = getConfigIntValue(config, SPOOL_SIZE_PARAM, 0);
+        batchSize = Math.max(1, getConfigIntValue(config, BATCH_SIZE_PARAM, 1000));
+        flushInterval = Math.max(1, getConfigIntValue(config, FLUSH_INTERVAL_PARAM, 1000));
+        flushJitter = Math.max(0, getConfigIntValue(config, FLUSH_JITTER_PARAM, 0));
+        maxBufferedPoints = Math.max(batchSize, getConfigIntValue(config, MAX_BUFFERED_POINTS_PARAM, 10000));
+        gzip = getConfigBooleanValue(config, GZIP_PARAM, false);
     }
 
     private static boolean getConfigBooleanValue(Map<String, Object> config, String key, boolean defaultValue) {
@@ -81,6 +99,20 @@ public class InfluxDBConfiguration {
         }
     }
 
+    private int getConfigIntValue(Map<String, Object> config, String key, int defaultValue) {
+        Object object = config.get(key);
+        if (object instanceof Number) {
+            return ((Number) object).intValue();
+        } else if (object instanceof String && !((String) object).isBlank()) {
+            try {
+                return Integer.parseInt(((String) object).trim());
+            } catch (NumberFormatException e) {
+                logger.warn("Invalid value {} for {}", object, key);
+            }
+        }
+        return defaultValue;
+    }
+
     private InfluxDBVersion parseInfluxVersion(@Nullable String value) {
         try {
             return Optional.ofNullable(value).map(InfluxDBVersion::valueOf).orElse(InfluxDBVersion.UNKNOWN);
@@ -157,6 +189,45 @@ public class InfluxDBConfiguration {
         return addLabelTag;
     }
 
+    /**
+     * @return the maximum size of the local spool in megabytes, 0 if spooling is disabled
+     */
+    public int getSpoolSize() {
+        return spoolSize;
+    }
+
+    /**
+     * @return the maximum number of points written in one request
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @return the maximum time in milliseconds a point is buffered before it is written
+     */
+    public int getFlushInterval() {
+        return flushInterval;
+    }
+
+    /**
+     * @return the maximum random delay in milliseconds added to each flush interval
+     */
+    public int getFlushJitter() {
+        return flushJitter;
+    }
+
+    /**
+     * @return the maximum number of points buffered before the oldest points are dropped
+     */
+    public int getMaxBufferedPoints() {
+        return maxBufferedPoints;
+    }
+
+    public boolean isGzip() {
+        return gzip;
+    }
+
     public String getUser() {
         return user;
     }
@@ -175,7 +246,9 @@ public class InfluxDBConfiguration {
                 + password.length() + " chars" + '\'' + ", token='" + token.length() + " chars" + '\''
                 + ", databaseName='" + databaseName + '\'' + ", retentionPolicy='" + retentionPolicy + '\''
                 + ", version=" + version + ", replaceUnderscore=" + replaceUnderscore + ", addCategoryTag="
-                + addCategoryTag + ", addTypeTag=" + addTypeTag + ", addLabelTag=" + addLabelTag + '}';
+                + addCategoryTag + ", addTypeTag=" + addTypeTag + ", addLabelTag=" + addLabelTag + ", spoolSize="
+                + spoolSize + ", batchSize=" + batchSize + ", flushInterval=" + flushInterval + ", flushJitter="
+                + flushJitter + ", maxBufferedPoints=" + maxBufferedPoints + ", gzip=" + gzip + '}';
         return sb;
     }
 
@@ -14,6 +14,7 @@ package org.openhab.persistence.influxdb.internal;
 
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
 
@@ -58,17 +59,18 @@ public interface InfluxDBRepository {
     Map<String, Integer> getStoredItemsCount();
 
     /**
-     * Executes Flux query
+     * Executes query and passes each result row to the consumer as soon as it has been read
      *
      * @param query Query
-     * @return Query results
+     * @param rowConsumer Consumer of the result rows
      */
-    List<InfluxRow> query(String query);
+    void query(String query, Consumer<InfluxRow> rowConsumer);
 
     /**
-     * Write point to database
+     * Write points to database and wait until they have been written
      *
-     * @param influxPoint Point to write
+     * @param influxPoints Points to write
+     * @return True if all points have been written, otherwise false
      */
-    void write(InfluxPoint influxPoint);
+    boolean write(List<InfluxPoint> influxPoints);
 }
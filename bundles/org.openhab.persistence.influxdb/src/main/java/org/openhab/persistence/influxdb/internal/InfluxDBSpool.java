@@ -0,0 +1,334 @@
+/**
+ * Copyright (c) 2010-2021 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.persistence.influxdb.internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only local spool for points that could not be written to InfluxDB.
+ *
+ * Points are written to numbered segment files in a compact binary format. Segments are replayed oldest first and
+ * deleted once all their points have been written. If the spool grows beyond its maximum size, the oldest segments
+ * are deleted.
+ *
+ * @author craigham - Initial contribution
+ */
+@NonNullByDefault
+public class InfluxDBSpool {
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".spool";
+    private static final long MAX_SEGMENT_SIZE = 1024 * 1024;
+
+    private static final byte TYPE_NULL = 0;
+    private static final byte TYPE_STRING = 1;
+    private static final byte TYPE_DECIMAL = 2;
+    private static final byte TYPE_LONG = 3;
+    private static final byte TYPE_DOUBLE = 4;
+    private static final byte TYPE_BOOLEAN = 5;
+
+    private final Logger logger = LoggerFactory.getLogger(InfluxDBSpool.class);
+
+    private final Path directory;
+    private final long maxSize;
+    private final long segmentSize;
+
+    // segment number -> size in bytes, including the current segment
+    private final TreeMap<Long, Long> segments = new TreeMap<>();
+    private long nextSegment = 0;
+    private long currentSegment = -1;
+    private @Nullable DataOutputStream out;
+    private long size = 0;
+    // a point is encoded completely before it is appended, so a failure does not leave a partial point
+    private final ByteArrayOutputStream pointBuffer = new ByteArrayOutputStream();
+
+    /**
+     * @param directory the directory for the segment files, segments left from a previous run are picked up
+     * @param maxSize the maximum size of all segments in bytes
+     */
+    public InfluxDBSpool(Path directory, long maxSize) throws IOException {
+        this.directory = directory;
+        this.maxSize = maxSize;
+        this.segmentSize = Math.max(1024, Math.min(MAX_SEGMENT_SIZE, maxSize / 8));
+        Files.createDirectories(directory);
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> {
+                Long number = parseSegmentNumber(file);
+                if (number != null) {
+                    try {
+                        long fileSize = Files.size(file);
+                        segments.put(number, fileSize);
+                        size += fileSize;
+                    } catch (IOException e) {
+                        logger.warn("Ignoring unreadable spool segment {}: {}", file, e.getMessage());
+                    }
+                }
+            });
+        }
+        if (!segments.isEmpty()) {
+            nextSegment = segments.lastKey() + 1;
+            logger.info("Found {} spooled bytes in {} segments, they will be written when InfluxDB is available",
+                    size, segments.size());
+        }
+    }
+
+    public synchronized boolean isEmpty() {
+        return size == 0;
+    }
+
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * Append a point to the spool
+     *
+     * @param point the point
+     * @throws IOException if the point could not be written
+     */
+    public synchronized void append(InfluxPoint point) throws IOException {
+        pointBuffer.reset();
+        writePoint(new DataOutputStream(pointBuffer), point);
+        DataOutputStream currentOut = out;
+        if (currentOut == null || segments.getOrDefault(currentSegment, 0L) >= segmentSize) {
+            currentOut = openNextSegment();
+        }
+        pointBuffer.writeTo(currentOut);
+        currentOut.flush();
+        long written = pointBuffer.size();
+        segments.merge(currentSegment, written, Long::sum);
+        size += written;
+        evictOldest();
+    }
+
+    /**
+     * Write all spooled points, oldest first. Each segment is deleted once all of its points have been written.
+     *
+     * Points appended while replaying go to a new segment and are replayed by the next call.
+     *
+     * @param writer writes a batch of points and returns <code>true</code> on success
+     * @param batchSize the maximum number of points passed to the writer at once
+     * @return <code>true</code> if all segments existing at the start of the call were written
+     */
+    public boolean replay(Predicate<List<InfluxPoint>> writer, int batchSize) {
+        List<Long> replayed;
+        synchronized (this) {
+            closeCurrentSegment();
+            replayed = new ArrayList<>(segments.keySet());
+        }
+        for (Long number : replayed) {
+            Path file = getSegmentFile(number);
+            List<InfluxPoint> batch = new ArrayList<>(batchSize);
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                InfluxPoint point;
+                while ((point = readPoint(in)) != null) {
+                    batch.add(point);
+                    if (batch.size() >= batchSize) {
+                        if (!writer.test(batch)) {
+                            return false;
+                        }
+                        batch = new ArrayList<>(batchSize);
+                    }
+                }
+            } catch (IOException e) {
+                if (Files.exists(file)) {
+                    logger.warn("Dropping unreadable spool segment {}: {}", file, e.getMessage());
+                }
+            }
+            if (!batch.isEmpty() && !writer.test(batch)) {
+                return false;
+            }
+            synchronized (this) {
+                deleteSegment(number);
+            }
+        }
+        return true;
+    }
+
+    public synchronized void close() {
+        closeCurrentSegment();
+    }
+
+    private DataOutputStream openNextSegment() throws IOException {
+        closeCurrentSegment();
+        currentSegment = nextSegment++;
+        OutputStream stream = Files.newOutputStream(getSegmentFile(currentSegment), StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND);
+        DataOutputStream newOut = new DataOutputStream(new BufferedOutputStream(stream));
+        segments.put(currentSegment, 0L);
+        out = newOut;
+        return newOut;
+    }
+
+    private void closeCurrentSegment() {
+        DataOutputStream currentOut = out;
+        out = null;
+        currentSegment = -1;
+        if (currentOut != null) {
+            try {
+                currentOut.close();
+            } catch (IOException e) {
+                logger.warn("Error closing spool segment: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void evictOldest() {
+        long evicted = 0;
+        while (size > maxSize && segments.size() > 1) {
+            Map.Entry<Long, Long> oldest = segments.firstEntry();
+            evicted += oldest.getValue();
+            deleteSegment(oldest.getKey());
+        }
+        if (evicted > 0) {
+            logger.warn("InfluxDB spool is full, dropped {} bytes of the oldest points", evicted);
+        }
+    }
+
+    private void deleteSegment(long number) {
+        Long segmentSize = segments.remove(number);
+        if (segmentSize != null) {
+            size -= segmentSize;
+        }
+        try {
+            Files.deleteIfExists(getSegmentFile(number));
+        } catch (IOException e) {
+            logger.warn("Could not delete spool segment {}: {}", number, e.getMessage());
+        }
+    }
+
+    private Path getSegmentFile(long number) {
+        return directory.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+    }
+
+    private static @Nullable Long parseSegmentNumber(Path file) {
+        String name = file.getFileName().toString();
+        if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+            try {
+                return Long.valueOf(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private static void writePoint(DataOutputStream out, InfluxPoint point) throws IOException {
+        writeString(out, point.getMeasurementName());
+        out.writeLong(point.getTime().toEpochMilli());
+        Object value = point.getValue();
+        if (value == null) {
+            out.writeByte(TYPE_NULL);
+        } else if (value instanceof BigDecimal) {
+            out.writeByte(TYPE_DECIMAL);
+            writeString(out, value.toString());
+        } else if (value instanceof Double || value instanceof Float) {
+            out.writeByte(TYPE_DOUBLE);
+            out.writeDouble(((Number) value).doubleValue());
+        } else if (value instanceof Number) {
+            out.writeByte(TYPE_LONG);
+            out.writeLong(((Number) value).longValue());
+        } else if (value instanceof Boolean) {
+            out.writeByte(TYPE_BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else {
+            out.writeByte(TYPE_STRING);
+            writeString(out, value.toString());
+        }
+        Map<String, String> tags = point.getTags();
+        out.writeShort(tags.size());
+        for (Map.Entry<String, String> tag : tags.entrySet()) {
+            writeString(out, tag.getKey());
+            writeString(out, tag.getValue());
+        }
+    }
+
+    private static @Nullable InfluxPoint readPoint(DataInputStream in) throws IOException {
+        try {
+            InfluxPoint.Builder builder = InfluxPoint.newBuilder(readString(in))
+                    .withTime(Instant.ofEpochMilli(in.readLong()));
+            byte type = in.readByte();
+            switch (type) {
+                case TYPE_NULL:
+                    break;
+                case TYPE_DECIMAL:
+                    builder.withValue(new BigDecimal(readString(in)));
+                    break;
+                case TYPE_DOUBLE:
+                    builder.withValue(in.readDouble());
+                    break;
+                case TYPE_LONG:
+                    builder.withValue(in.readLong());
+                    break;
+                case TYPE_BOOLEAN:
+                    builder.withValue(in.readBoolean());
+                    break;
+                case TYPE_STRING:
+                    builder.withValue(readString(in));
+                    break;
+                default:
+                    throw new IOException("Unknown value type " + type);
+            }
+            int tagCount = in.readUnsignedShort();
+            for (int i = 0; i < tagCount; i++) {
+                builder.withTag(readString(in), readString(in));
+            }
+            return builder.build();
+        } catch (EOFException e) {
+            // end of the segment, or a point that was only partially written before a crash
+            return null;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Invalid string length " + length);
+        }
+        // reads in chunks, so a corrupt length fails at the end of the segment instead of allocating it up front
+        byte[] bytes = in.readNBytes(length);
+        if (bytes.length < length) {
+            throw new EOFException();
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
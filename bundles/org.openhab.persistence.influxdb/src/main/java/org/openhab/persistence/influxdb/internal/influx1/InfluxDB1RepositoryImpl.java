@@ -18,17 +18,17 @@ import static org.openhab.persistence.influxdb.internal.InfluxDBConstants.FIELD_
 import static org.openhab.persistence.influxdb.internal.InfluxDBConstants.TAG_ITEM_NAME;
 
 import java.time.Instant;
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.Optional;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.eclipse.jdt.annotation.Nullable;
 import org.influxdb.InfluxDB;
+import org.influxdb.InfluxDB.ConsistencyLevel;
 import org.influxdb.InfluxDBFactory;
 import org.influxdb.dto.Point;
 import org.influxdb.dto.Pong;
@@ -56,6 +56,8 @@ public class InfluxDB1RepositoryImpl implements InfluxDBRepository {
     private InfluxDBConfiguration configuration;
     @Nullable
     private InfluxDB client;
+    // estimated line protocol length of a point, used to size the request body
+    private volatile int lineLengthEstimate = 128;
 
     public InfluxDB1RepositoryImpl(InfluxDBConfiguration configuration) {
         this.configuration = configuration;
@@ -72,7 +74,9 @@ public class InfluxDB1RepositoryImpl implements InfluxDBRepository {
                 configuration.getPassword());
         createdClient.setDatabase(configuration.getDatabaseName());
         createdClient.setRetentionPolicy(configuration.getRetentionPolicy());
-        createdClient.enableBatch(200, 100, TimeUnit.MILLISECONDS);
+        if (configuration.isGzip()) {
+            createdClient.enableGzip();
+        }
         this.client = createdClient;
         return checkConnectionStatus();
     }
@@ -115,13 +119,29 @@ public class InfluxDB1RepositoryImpl implements InfluxDBRepository {
     }
 
     @Override
-    public void write(InfluxPoint point) {
+    public boolean write(List<InfluxPoint> points) {
         final InfluxDB currentClient = this.client;
         if (currentClient != null) {
-            Point clientPoint = convertPointToClientFormat(point);
-            currentClient.write(configuration.getDatabaseName(), configuration.getRetentionPolicy(), clientPoint);
+            if (points.isEmpty()) {
+                return true;
+            }
+            StringBuilder lineProtocol = new StringBuilder(points.size() * lineLengthEstimate);
+            for (InfluxPoint point : points) {
+                lineProtocol.append(convertPointToClientFormat(point).lineProtocol(TimeUnit.MILLISECONDS))
+                        .append('\n');
+            }
+            lineLengthEstimate = lineProtocol.length() / points.size() + 16;
+            try {
+                currentClient.write(configuration.getDatabaseName(), configuration.getRetentionPolicy(),
+                        ConsistencyLevel.ONE, TimeUnit.MILLISECONDS, lineProtocol.toString());
+                return true;
+            } catch (RuntimeException e) {
+                handleDatabaseException(e);
+                return false;
+            }
         } else {
-            logger.warn("Write point {} ignored due to client isn't connected", point);
+            logger.warn("Write of {} points ignored due to client isn't connected", points.size());
+            return false;
         }
     }
 
@@ -148,20 +168,18 @@ public class InfluxDB1RepositoryImpl implements InfluxDBRepository {
     }
 
     @Override
-    public List<InfluxRow> query(String query) {
+    public void query(String query, Consumer<InfluxRow> rowConsumer) {
         final InfluxDB currentClient = client;
         if (currentClient != null) {
             Query parsedQuery = new Query(query, configuration.getDatabaseName());
             List<QueryResult.Result> results = currentClient.query(parsedQuery, TimeUnit.MILLISECONDS).getResults();
-            return convertClientResutToRepository(results);
+            convertClientResutToRepository(results, rowConsumer);
         } else {
-            logger.warn("Returning empty list because queryAPI isn't present");
-            return Collections.emptyList();
+            logger.warn("Returning no rows because client isn't present");
         }
     }
 
-    private List<InfluxRow> convertClientResutToRepository(List<QueryResult.Result> results) {
-        List<InfluxRow> rows = new ArrayList<>();
+    private void convertClientResutToRepository(List<QueryResult.Result> results, Consumer<InfluxRow> rowConsumer) {
         for (QueryResult.Result result : results) {
             List<QueryResult.Series> seriess = result.getSeries();
             if (result.getError() != null) {
@@ -196,24 +214,27 @@ public class InfluxDB1RepositoryImpl implements InfluxDBRepository {
                             if (valueColumn == null || timestampColumn == null) {
                                 throw new IllegalStateException("missing column");
                             }
-                            for (int i = 0; i < valuess.size(); i++) {
-                                Double rawTime = (Double) Objects.requireNonNull(valuess.get(i).get(timestampColumn));
+                            // the item name is a series tag in queries grouped by item
+                            Map<String, String> tags = series.getTags();
+                            @Nullable
+                            String taggedItemName = tags != null ? tags.get(TAG_ITEM_NAME) : null;
+                            String seriesItemName = taggedItemName != null ? taggedItemName : series.getName();
+                            for (List<@Nullable Object> values : valuess) {
+                                Double rawTime = (Double) Objects.requireNonNull(values.get(timestampColumn));
                                 Instant time = Instant.ofEpochMilli(rawTime.longValue());
                                 @Nullable
-                                Object value = valuess.get(i).get(valueColumn);
-                                var currentI = i;
-                                String itemName = Optional.ofNullable(itemNameColumn)
-                                        .flatMap(inc -> Optional.ofNullable((String) valuess.get(currentI).get(inc)))
-                                        .orElse(series.getName());
+                                Object value = values.get(valueColumn);
+                                @Nullable
+                                Object rawItemName = itemNameColumn != null ? values.get(itemNameColumn) : null;
+                                String itemName = rawItemName != null ? (String) rawItemName : seriesItemName;
                                 logger.trace("adding historic item {}: time {} value {}", itemName, time, value);
-                                rows.add(new InfluxRow(time, itemName, value));
+                                rowConsumer.accept(new InfluxRow(time, itemName, value));
                             }
                         }
                     }
                 }
             }
         }
-        return rows;
     }
 
     @Override
@@ -19,8 +19,10 @@ import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.eclipse.jdt.annotation.Nullable;
@@ -33,14 +35,15 @@ import org.openhab.persistence.influxdb.internal.UnnexpectedConditionException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.influxdb.Cancellable;
 import com.influxdb.client.InfluxDBClient;
 import com.influxdb.client.InfluxDBClientFactory;
 import com.influxdb.client.InfluxDBClientOptions;
 import com.influxdb.client.QueryApi;
-import com.influxdb.client.WriteApi;
 import com.influxdb.client.domain.Ready;
 import com.influxdb.client.domain.WritePrecision;
 import com.influxdb.client.write.Point;
+import com.influxdb.query.FluxRecord;
 import com.influxdb.query.FluxTable;
 
 /**
@@ -56,8 +59,8 @@ public class InfluxDB2RepositoryImpl implements InfluxDBRepository {
     private InfluxDBClient client;
     @Nullable
     private QueryApi queryAPI;
-    @Nullable
-    private WriteApi writeAPI;
+    // estimated line protocol length of a point, used to size the request body
+    private volatile int lineLengthEstimate = 128;
 
     public InfluxDB2RepositoryImpl(InfluxDBConfiguration configuration) {
         this.configuration = configuration;
@@ -91,10 +94,12 @@ public class InfluxDB2RepositoryImpl implements InfluxDBRepository {
         InfluxDBClientOptions clientOptions = optionsBuilder.build();
 
         final InfluxDBClient createdClient = InfluxDBClientFactory.create(clientOptions);
+        if (configuration.isGzip()) {
+            createdClient.enableGzip();
+        }
         this.client = createdClient;
         logger.debug("Succesfully connected to InfluxDB. Instance ready={}", createdClient.ready());
         queryAPI = createdClient.getQueryApi();
-        writeAPI = createdClient.getWriteApi();
         return checkConnectionStatus();
     }
 
@@ -134,17 +139,34 @@ public class InfluxDB2RepositoryImpl implements InfluxDBRepository {
     }
 
     /**
-     * Write point to database
+     * Write points to database and wait until they have been written
      *
-     * @param point
+     * @param points
+     * @return True if all points have been written, otherwise false
      */
     @Override
-    public void write(InfluxPoint point) {
-        final WriteApi currentWriteAPI = writeAPI;
-        if (currentWriteAPI != null) {
-            currentWriteAPI.writePoint(convertPointToClientFormat(point));
+    public boolean write(List<InfluxPoint> points) {
+        final InfluxDBClient currentClient = client;
+        if (currentClient != null) {
+            if (points.isEmpty()) {
+                return true;
+            }
+            StringBuilder lineProtocol = new StringBuilder(points.size() * lineLengthEstimate);
+            for (InfluxPoint point : points) {
+                lineProtocol.append(Objects.requireNonNull(convertPointToClientFormat(point).toLineProtocol()))
+                        .append('\n');
+            }
+            lineLengthEstimate = lineProtocol.length() / points.size() + 16;
+            try {
+                currentClient.getWriteApiBlocking().writeRecord(WritePrecision.MS, lineProtocol.toString());
+                return true;
+            } catch (RuntimeException e) {
+                logger.warn("database error: {}", e.getMessage());
+                return false;
+            }
         } else {
-            logger.warn("Write point {} ignored due to writeAPI isn't present", point);
+            logger.warn("Write of {} points ignored due to client isn't connected", points.size());
+            return false;
         }
     }
 
@@ -170,34 +192,51 @@ public class InfluxDB2RepositoryImpl implements InfluxDBRepository {
     }
 
     /**
-     * Executes Flux query
+     * Executes Flux query, the records are passed to the consumer while the response is read
      *
      * @param query Query
-     * @return Query results
+     * @param rowConsumer Consumer of the result rows
      */
     @Override
-    public List<InfluxRow> query(String query) {
+    public void query(String query, Consumer<InfluxRow> rowConsumer) {
         final QueryApi currentQueryAPI = queryAPI;
         if (currentQueryAPI != null) {
-            List<FluxTable> clientResult = currentQueryAPI.query(query);
-            return convertClientResutToRepository(clientResult);
+            CountDownLatch finished = new CountDownLatch(1);
+            AtomicReference<@Nullable Throwable> failure = new AtomicReference<>();
+            AtomicReference<@Nullable Cancellable> running = new AtomicReference<>();
+            currentQueryAPI.query(query, (cancellable, record) -> {
+                running.set(cancellable);
+                rowConsumer.accept(convertRecordToRow(record));
+            }, error -> {
+                failure.set(error);
+                finished.countDown();
+            }, finished::countDown);
+            try {
+                finished.await();
+            } catch (InterruptedException e) {
+                Cancellable cancellable = running.get();
+                if (cancellable != null) {
+                    cancellable.cancel();
+                }
+                Thread.currentThread().interrupt();
+                throw new UnnexpectedConditionException("Query interrupted", e);
+            }
+            Throwable error = failure.get();
+            if (error instanceof RuntimeException) {
+                throw (RuntimeException) error;
+            } else if (error != null) {
+                throw new UnnexpectedConditionException("Query failed", error);
+            }
         } else {
-            logger.warn("Returning empty list because queryAPI isn't present");
-            return Collections.emptyList();
+            logger.warn("Returning no rows because queryAPI isn't present");
         }
     }
 
-    private List<InfluxRow> convertClientResutToRepository(List<FluxTable> clientResult) {
-        return clientResult.stream().flatMap(this::mapRawResultToHistoric).collect(Collectors.toList());
-    }
-
-    private Stream<InfluxRow> mapRawResultToHistoric(FluxTable rawRow) {
-        return rawRow.getRecords().stream().map(r -> {
-            String itemName = (String) r.getValueByKey(InfluxDBConstants.TAG_ITEM_NAME);
-            Object value = r.getValueByKey(COLUMN_VALUE_NAME_V2);
-            Instant time = (Instant) r.getValueByKey(COLUMN_TIME_NAME_V2);
-            return new InfluxRow(time, itemName, value);
-        });
+    private InfluxRow convertRecordToRow(FluxRecord record) {
+        String itemName = (String) record.getValueByKey(InfluxDBConstants.TAG_ITEM_NAME);
+        Object value = record.getValueByKey(COLUMN_VALUE_NAME_V2);
+        Instant time = (Instant) record.getValueByKey(COLUMN_TIME_NAME_V2);
+        return new InfluxRow(time, itemName, value);
     }
 
     /**
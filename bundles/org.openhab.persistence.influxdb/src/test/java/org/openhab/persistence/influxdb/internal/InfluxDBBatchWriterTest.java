@@ -0,0 +1,118 @@
+/**
+ * Copyright (c) 2010-2021 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.persistence.influxdb.internal;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jdt.annotation.DefaultLocation;
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author craigham - Initial contribution
+ */
+@SuppressWarnings("null") // In case of any NPE it will cause test fail that it's the expected result
+@NonNullByDefault(value = { DefaultLocation.PARAMETER, DefaultLocation.RETURN_TYPE })
+public class InfluxDBBatchWriterTest {
+
+    @Test
+    public void pointsAreWrittenInBatches() {
+        List<List<InfluxPoint>> batches = new CopyOnWriteArrayList<>();
+        InfluxDBBatchWriter writer = new InfluxDBBatchWriter(batch -> batches.add(new ArrayList<>(batch)), null, 10,
+                60000, 0, 100);
+        writer.start();
+        for (int i = 0; i < 25; i++) {
+            writer.add(createPoint(i));
+        }
+        writer.stop();
+
+        assertThat(batches.stream().mapToInt(List::size).sum(), is(25));
+        assertThat(batches.stream().allMatch(batch -> batch.size() <= 10), is(true));
+        assertThat(batches.get(0).get(0).getTime(), equalTo(Instant.ofEpochMilli(0)));
+        assertThat(writer.getWritten(), is(25L));
+        assertThat(writer.getDropped(), is(0L));
+    }
+
+    @Test
+    public void oldestPointsAreDroppedWhenBufferIsFull() {
+        List<InfluxPoint> written = new ArrayList<>();
+        InfluxDBBatchWriter writer = new InfluxDBBatchWriter(written::addAll, null, 5, 60000, 0, 5);
+        // not started, so all points stay in the buffer
+        for (int i = 0; i < 8; i++) {
+            writer.add(createPoint(i));
+        }
+
+        assertThat(writer.getBufferedPoints(), is(5));
+        assertThat(writer.getDropped(), is(3L));
+    }
+
+    @Test
+    public void failedBatchesArePassedToHandler() {
+        List<InfluxPoint> failed = new CopyOnWriteArrayList<>();
+        InfluxDBBatchWriter writer = new InfluxDBBatchWriter(batch -> false, failed::addAll, 10, 60000, 0, 100);
+        writer.start();
+        writer.add(createPoint(1));
+        writer.add(createPoint(2));
+        writer.stop();
+
+        assertThat(failed, hasSize(2));
+        assertThat(writer.getWritten(), is(0L));
+    }
+
+    @Test
+    public void bufferedPointsArePassedOnIfWriterDoesNotStop() throws InterruptedException {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<InfluxPoint> failed = new CopyOnWriteArrayList<>();
+        InfluxDBBatchWriter writer = new InfluxDBBatchWriter(batch -> {
+            writing.countDown();
+            // a write that ignores interrupts, like a blocked connection
+            while (release.getCount() > 0) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    // keep waiting
+                }
+            }
+            return true;
+        }, failed::addAll, 1, 100, 0, 100);
+        writer.start();
+        writer.add(createPoint(1));
+        assertThat(writing.await(5, TimeUnit.SECONDS), is(true));
+        writer.add(createPoint(2));
+        writer.stop();
+
+        assertThat(failed, hasSize(1));
+        assertThat(failed.get(0).getTime(), equalTo(Instant.ofEpochMilli(2)));
+
+        release.countDown();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (writer.getWritten() < 1 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(writer.getWritten(), is(1L));
+        assertThat(failed, hasSize(1));
+    }
+
+    private static InfluxPoint createPoint(long time) {
+        return InfluxPoint.newBuilder("item").withTime(Instant.ofEpochMilli(time)).withValue(time).build();
+    }
+}
@@ -12,9 +12,13 @@
  */
 package org.openhab.persistence.influxdb.internal;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.Mockito.*;
 
+import java.time.Duration;
 import java.util.Map;
 
 import org.eclipse.jdt.annotation.DefaultLocation;
@@ -23,10 +27,14 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.openhab.core.items.ItemNotFoundException;
 import org.openhab.core.items.ItemRegistry;
 import org.openhab.core.items.MetadataRegistry;
+import org.openhab.core.library.items.StringItem;
+import org.openhab.core.persistence.FilterCriteria;
 import org.openhab.persistence.influxdb.InfluxDBPersistenceService;
 
 /**
@@ -38,13 +46,14 @@ public class InfluxDBPersistenceServiceTest {
     private InfluxDBPersistenceService instance;
 
     private @Mock InfluxDBRepository influxDBRepository;
+    private @Mock ItemRegistry itemRegistry;
 
     private Map<String, Object> validConfig;
     private Map<String, Object> invalidConfig;
 
     @BeforeEach
     public void before() {
-        instance = new InfluxDBPersistenceService(mock(ItemRegistry.class), mock(MetadataRegistry.class)) {
+        instance = new InfluxDBPersistenceService(itemRegistry, mock(MetadataRegistry.class)) {
             @Override
             protected InfluxDBRepository createInfluxDBRepository() {
                 return influxDBRepository;
@@ -61,6 +70,7 @@ public class InfluxDBPersistenceServiceTest {
         invalidConfig = null;
         instance = null;
         influxDBRepository = null;
+        itemRegistry = null;
     }
 
     @Test
@@ -93,7 +103,9 @@ public class InfluxDBPersistenceServiceTest {
         instance.activate(validConfig);
         when(influxDBRepository.isConnected()).thenReturn(true);
         instance.store(ItemTestHelper.createNumberItem("number", 5));
-        verify(influxDBRepository).write(any());
+        // buffered points are written when the service is deactivated
+        instance.deactivate();
+        verify(influxDBRepository).write(anyList());
     }
 
     @Test
@@ -101,6 +113,36 @@ public class InfluxDBPersistenceServiceTest {
         instance.activate(validConfig);
         when(influxDBRepository.isConnected()).thenReturn(false);
         instance.store(ItemTestHelper.createNumberItem("number", 5));
-        verify(influxDBRepository, never()).write(any());
+        instance.deactivate();
+        verify(influxDBRepository, never()).write(anyList());
+    }
+
+    @Test
+    public void aggregatedQueryOfNumberItemUsesAggregation() throws ItemNotFoundException {
+        instance.activate(validConfig);
+        when(influxDBRepository.isConnected()).thenReturn(true);
+        when(itemRegistry.getItem("temperature")).thenReturn(ItemTestHelper.createNumberItem("temperature", 5));
+
+        assertThat(aggregatedQuery("temperature", InfluxDBAggregation.MEAN), containsString("mean"));
+    }
+
+    @Test
+    public void aggregatedQueryOfNonNumberItemUsesLast() throws ItemNotFoundException {
+        instance.activate(validConfig);
+        when(influxDBRepository.isConnected()).thenReturn(true);
+        when(itemRegistry.getItem("text")).thenReturn(new StringItem("text"));
+
+        String query = aggregatedQuery("text", InfluxDBAggregation.MEAN);
+        assertThat(query, containsString("last"));
+        assertThat(query, not(containsString("mean")));
+    }
+
+    private String aggregatedQuery(String itemName, InfluxDBAggregation aggregation) {
+        FilterCriteria filter = new FilterCriteria();
+        filter.setItemName(itemName);
+        instance.query(filter, Duration.ofHours(1), aggregation);
+        ArgumentCaptor<String> query = ArgumentCaptor.forClass(String.class);
+        verify(influxDBRepository).query(query.capture(), any());
+        return query.getValue();
     }
 }
@@ -0,0 +1,125 @@
+/**
+ * Copyright (c) 2010-2021 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.persistence.influxdb.internal;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jdt.annotation.DefaultLocation;
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * @author craigham - Initial contribution
+ */
+@SuppressWarnings("null") // In case of any NPE it will cause test fail that it's the expected result
+@NonNullByDefault(value = { DefaultLocation.PARAMETER, DefaultLocation.RETURN_TYPE })
+public class InfluxDBSpoolTest {
+
+    public @TempDir @NonNullByDefault({}) Path folder;
+
+    @Test
+    public void replayWritesPointsInOrderAndEmptiesSpool() throws IOException {
+        InfluxDBSpool spool = new InfluxDBSpool(folder, 1024 * 1024);
+        spool.append(createPoint("a", 1, new BigDecimal("1.5")));
+        spool.append(createPoint("b", 2, "text"));
+        spool.append(createPoint("c", 3, 1));
+
+        List<InfluxPoint> written = new ArrayList<>();
+        boolean result = spool.replay(points -> written.addAll(points), 2);
+
+        assertThat(result, is(true));
+        assertThat(spool.isEmpty(), is(true));
+        assertThat(written, hasSize(3));
+        assertThat(written.get(0).getMeasurementName(), equalTo("a"));
+        assertThat(written.get(0).getValue(), equalTo(new BigDecimal("1.5")));
+        assertThat(written.get(0).getTags(), hasEntry("item", "a"));
+        assertThat(written.get(1).getValue(), equalTo("text"));
+        assertThat(written.get(2).getValue(), equalTo(1L));
+        assertThat(written.get(2).getTime(), equalTo(Instant.ofEpochMilli(3)));
+    }
+
+    @Test
+    public void failedReplayKeepsPoints() throws IOException {
+        InfluxDBSpool spool = new InfluxDBSpool(folder, 1024 * 1024);
+        spool.append(createPoint("a", 1, 1));
+
+        assertThat(spool.replay(points -> false, 10), is(false));
+        assertThat(spool.isEmpty(), is(false));
+
+        List<InfluxPoint> written = new ArrayList<>();
+        assertThat(spool.replay(points -> written.addAll(points), 10), is(true));
+        assertThat(written, hasSize(1));
+    }
+
+    @Test
+    public void spooledPointsSurviveRestart() throws IOException {
+        InfluxDBSpool spool = new InfluxDBSpool(folder, 1024 * 1024);
+        spool.append(createPoint("a", 1, 1));
+        spool.close();
+
+        InfluxDBSpool reopened = new InfluxDBSpool(folder, 1024 * 1024);
+        reopened.append(createPoint("b", 2, 2));
+
+        List<InfluxPoint> written = new ArrayList<>();
+        reopened.replay(points -> written.addAll(points), 10);
+        assertThat(written, hasSize(2));
+        assertThat(written.get(0).getMeasurementName(), equalTo("a"));
+        assertThat(written.get(1).getMeasurementName(), equalTo("b"));
+    }
+
+    @Test
+    public void oldestPointsAreDroppedWhenFull() throws IOException {
+        InfluxDBSpool spool = new InfluxDBSpool(folder, 4096);
+        for (int i = 0; i < 1000; i++) {
+            spool.append(createPoint("item" + i, i, i));
+        }
+
+        assertThat(spool.getSize(), lessThanOrEqualTo(4096L));
+        List<InfluxPoint> written = new ArrayList<>();
+        spool.replay(points -> written.addAll(points), 100);
+        assertThat(written, not(empty()));
+        assertThat(written.get(written.size() - 1).getMeasurementName(), equalTo("item999"));
+        assertThat(written.get(0).getMeasurementName(), not(equalTo("item0")));
+    }
+
+    @Test
+    public void longStringsAreSpooled() throws IOException {
+        // longer than the 65535 bytes DataOutputStream.writeUTF can write
+        String longValue = "\u00e9".repeat(40000);
+        InfluxDBSpool spool = new InfluxDBSpool(folder, 1024 * 1024);
+        spool.append(createPoint("a", 1, 1));
+        spool.append(createPoint("b", 2, longValue));
+        spool.append(createPoint("c", 3, 3));
+
+        List<InfluxPoint> written = new ArrayList<>();
+        assertThat(spool.replay(points -> written.addAll(points), 10), is(true));
+        assertThat(written, hasSize(3));
+        assertThat(written.get(1).getValue(), equalTo(longValue));
+        assertThat(written.get(2).getMeasurementName(), equalTo("c"));
+        assertThat(written.get(2).getValue(), equalTo(3L));
+    }
+
+    private static InfluxPoint createPoint(String name, long time, Object value) {
+        return InfluxPoint.newBuilder(name).withTime(Instant.ofEpochMilli(time)).withValue(value)
+                .withTag("item", name).build();
+    }
+}
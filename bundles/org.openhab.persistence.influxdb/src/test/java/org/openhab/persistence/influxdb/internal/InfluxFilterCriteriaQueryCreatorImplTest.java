@@ -12,10 +12,12 @@
  */
 package org.openhab.persistence.influxdb.internal;
 
+import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.mockito.Mockito.when;
 
+import java.time.Duration;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
@@ -162,6 +164,24 @@ public class InfluxFilterCriteriaQueryCreatorImplTest {
                         + "|> sort(desc:false, columns:[\"_time\"])"));
     }
 
+    @Test
+    public void testAggregatedQuery() {
+        FilterCriteria criteria = createBaseCriteria();
+
+        String queryV1 = instanceV1.createAggregatedQuery(criteria, RETENTION_POLICY, Duration.ofHours(1),
+                InfluxDBAggregation.MEAN);
+        assertThat(queryV1, containsString("mean("));
+        assertThat(queryV1, containsString("FROM origin.sampleItem"));
+        assertThat(queryV1, containsString("GROUP BY time(3600000ms)"));
+        assertThat(queryV1, containsString("fill(none)"));
+
+        String queryV2 = instanceV2.createAggregatedQuery(criteria, RETENTION_POLICY, Duration.ofHours(1),
+                InfluxDBAggregation.MEAN);
+        assertThat(queryV2, containsString("|> filter(fn: (r) => r[\"_measurement\"] == \"sampleItem\")"));
+        assertThat(queryV2, containsString("|> aggregateWindow("));
+        assertThat(queryV2, containsString("mean"));
+    }
+
     private FilterCriteria createBaseCriteria() {
         return createBaseCriteria(ITEM_NAME);
     }
@@ -13,15 +13,23 @@
 package org.openhab.persistence.jdbc.db;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import javax.measure.Quantity;
@@ -51,7 +59,9 @@ import org.openhab.core.persistence.HistoricItem;
 import org.openhab.core.types.State;
 import org.openhab.core.types.TypeParser;
 import org.openhab.persistence.jdbc.dto.ItemVO;
+import org.openhab.persistence.jdbc.dto.ItemValueVO;
 import org.openhab.persistence.jdbc.dto.ItemsVO;
+import org.openhab.persistence.jdbc.dto.JdbcAggregation;
 import org.openhab.persistence.jdbc.dto.JdbcHistoricItem;
 import org.openhab.persistence.jdbc.utils.DbMetaData;
 import org.openhab.persistence.jdbc.utils.StringUtilsExt;
@@ -84,6 +94,12 @@ public class JdbcBaseDAO {
     protected String sqlCreateItemTable;
     protected String sqlInsertItemValue;
 
+    // insert statements with time parameter per table name
+    private final Map<String, String> insertItemValueSqls = new ConcurrentHashMap<>();
+    // parameterized history queries, key is the table and the shape of the filter
+    private final Map<String, String> histItemFilterQuerySqls = new ConcurrentHashMap<>();
+    protected int queryFetchSize = 1000;
+
     /********
      * INIT *
      ********/
@@ -333,16 +349,119 @@ public class JdbcBaseDAO {
         Yank.execute(sql, params);
     }
 
+    /**
+     * Prepares storing the current state of the item with the given time. The value is written later with
+     * {@link #doStoreItemValues(List)}.
+     */
+    public ItemValueVO doPrepareItemValue(Item item, ItemVO vo, ZonedDateTime time) {
+        ItemVO storedVO = storeItemValueProvider(item, vo);
+        String sql = insertItemValueSqls.computeIfAbsent(storedVO.getTableName(),
+                tableName -> insertItemValueWithTimeProvider(storedVO));
+        Object[] params = insertItemValueWithTimeParams(storedVO, time);
+        logger.debug("JDBC::doPrepareItemValue sql={} value='{}'", sql, storedVO.getValue());
+        return new ItemValueVO(item.getName(), sql, params);
+    }
+
+    /**
+     * Writes the prepared values in one transaction, using one batch statement per table.
+     *
+     * @throws SQLException if the batch could not be written, in this case the transaction is rolled back
+     */
+    public void doStoreItemValues(List<ItemValueVO> values) throws SQLException {
+        Map<String, List<ItemValueVO>> valuesBySql = values.stream()
+                .collect(Collectors.groupingBy(ItemValueVO::getSql, LinkedHashMap::new, Collectors.toList()));
+        try (Connection connection = Yank.getDefaultConnectionPool().getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                for (Map.Entry<String, List<ItemValueVO>> entry : valuesBySql.entrySet()) {
+                    try (PreparedStatement statement = connection.prepareStatement(entry.getKey())) {
+                        for (ItemValueVO value : entry.getValue()) {
+                            Object[] params = value.getParams();
+                            for (int i = 0; i < params.length; i++) {
+                                statement.setObject(i + 1, params[i]);
+                            }
+                            statement.addBatch();
+                        }
+                        statement.executeBatch();
+                    }
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    /**
+     * Writes a single prepared value, without a batch.
+     */
+    public void doStoreItemValue(ItemValueVO value) {
+        logger.debug("JDBC::doStoreItemValue sql={} item='{}'", value.getSql(), value.getItemName());
+        Yank.execute(value.getSql(), value.getParams());
+    }
+
     public List<HistoricItem> doGetHistItemFilterQuery(Item item, FilterCriteria filter, int numberDecimalcount,
             String table, String name, ZoneId timeZone) {
-        String sql = histItemFilterQueryProvider(filter, numberDecimalcount, table, name, timeZone);
-        logger.debug("JDBC::doGetHistItemFilterQuery sql={}", sql);
-        List<Object[]> m = Yank.queryObjectArrays(sql, null);
+        String key = table + "|" + name + "|" + numberDecimalcount + "|" + (filter.getBeginDate() != null) + "|"
+                + (filter.getEndDate() != null) + "|" + filter.getOrdering() + "|"
+                + (filter.getPageSize() != 0x7fffffff);
+        String sql = histItemFilterQuerySqls.computeIfAbsent(key,
+                k -> histItemFilterQueryProvider(filter, numberDecimalcount, table, name));
+        Object[] params = histItemFilterQueryParams(filter, timeZone);
+        logger.debug("JDBC::doGetHistItemFilterQuery sql={} params={}", sql, params);
+        return doQueryHistItems(item, sql, params, null, -1);
+    }
+
+    /**
+     * Queries the history of an item downsampled to one value per time window, the values of a window are
+     * aggregated by the database. Numbers are rounded to <code>numberDecimalcount</code> decimals, unless it is -1.
+     */
+    public List<HistoricItem> doGetHistItemAggregatedQuery(Item item, FilterCriteria filter,
+            JdbcAggregation aggregation, long windowSeconds, int numberDecimalcount, String table, ZoneId timeZone) {
+        String sql = histItemAggregatedQueryProvider(filter, aggregation, Math.max(1, windowSeconds), table);
+        Object[] params = histItemAggregatedQueryParams(filter, timeZone);
+        logger.debug("JDBC::doGetHistItemAggregatedQuery sql={} params={}", sql, params);
+        return doQueryHistItems(item, sql, params, aggregation, numberDecimalcount);
+    }
+
+    private List<HistoricItem> doQueryHistItems(Item item, String sql, Object[] params,
+            @Nullable JdbcAggregation aggregation, int numberDecimalcount) {
         // we already retrieve the unit here once as it is a very costly operation
         String itemName = item.getName();
         Unit<? extends Quantity<?>> unit = item instanceof NumberItem ? ((NumberItem) item).getUnit() : null;
-        return m.stream().map(o -> new JdbcHistoricItem(itemName, getState(item, unit, o[1]), objectAsDate(o[0])))
-                .collect(Collectors.<HistoricItem> toList());
+        List<HistoricItem> result = new ArrayList<>();
+        try (Connection connection = Yank.getDefaultConnectionPool().getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            // PostgreSQL only honours the fetch size inside a transaction
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                for (int i = 0; i < params.length; i++) {
+                    statement.setObject(i + 1, params[i]);
+                }
+                statement.setFetchSize(queryFetchSize);
+                try (ResultSet rs = statement.executeQuery()) {
+                    // rows are mapped while they are fetched, without keeping the raw rows in memory
+                    while (rs.next()) {
+                        State state = histItemState(item, unit, aggregation, numberDecimalcount, rs.getObject(2));
+                        if (state == null) {
+                            logger.debug("JDBC::doQueryHistItems: skipping empty value of item '{}'", itemName);
+                            continue;
+                        }
+                        result.add(new JdbcHistoricItem(itemName, state, objectAsDate(rs.getObject(1))));
+                    }
+                }
+                connection.commit();
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            logger.error("JDBC::doQueryHistItems: query for item '{}' failed: {}", itemName, e.getMessage());
+        }
+        return result;
     }
 
     /*************
@@ -350,8 +469,12 @@ public class JdbcBaseDAO {
      *************/
     static final DateTimeFormatter JDBC_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
+    /**
+     * Provides the history query for a table. Times and paging values are parameters, which are provided by
+     * {@link #histItemFilterQueryParams(FilterCriteria, ZoneId)}.
+     */
     protected String histItemFilterQueryProvider(FilterCriteria filter, int numberDecimalcount, String table,
-            String simpleName, ZoneId timeZone) {
+            String simpleName) {
         logger.debug(
                 "JDBC::getHistItemFilterQueryProvider filter = {}, numberDecimalcount = {}, table = {}, simpleName = {}",
                 filter, numberDecimalcount, table, simpleName);
@@ -359,17 +482,15 @@ public class JdbcBaseDAO {
         String filterString = "";
         if (filter.getBeginDate() != null) {
             filterString += filterString.isEmpty() ? " WHERE" : " AND";
-            filterString += " TIME>'" + JDBC_DATE_FORMAT.format(filter.getBeginDate().withZoneSameInstant(timeZone))
-                    + "'";
+            filterString += " TIME>?";
         }
         if (filter.getEndDate() != null) {
             filterString += filterString.isEmpty() ? " WHERE" : " AND";
-            filterString += " TIME<'" + JDBC_DATE_FORMAT.format(filter.getEndDate().withZoneSameInstant(timeZone))
-                    + "'";
+            filterString += " TIME<?";
         }
         filterString += (filter.getOrdering() == Ordering.ASCENDING) ? " ORDER BY time ASC" : " ORDER BY time DESC ";
         if (filter.getPageSize() != 0x7fffffff) {
-            filterString += " LIMIT " + filter.getPageNumber() * filter.getPageSize() + "," + filter.getPageSize();
+            filterString += " LIMIT ?,?";
         }
         // SELECT time, ROUND(value,3) FROM number_item_0114 ORDER BY time DESC LIMIT 0,1
         // rounding HALF UP
@@ -383,6 +504,104 @@ public class JdbcBaseDAO {
         return queryString;
     }
 
+    /**
+     * Provides the parameters for the statement created by
+     * {@link #histItemFilterQueryProvider(FilterCriteria, int, String, String)}.
+     */
+    protected Object[] histItemFilterQueryParams(FilterCriteria filter, ZoneId timeZone) {
+        List<Object> params = new ArrayList<>(4);
+        ZonedDateTime beginDate = filter.getBeginDate();
+        if (beginDate != null) {
+            params.add(filterTimeAsParam(beginDate, timeZone));
+        }
+        ZonedDateTime endDate = filter.getEndDate();
+        if (endDate != null) {
+            params.add(filterTimeAsParam(endDate, timeZone));
+        }
+        if (filter.getPageSize() != 0x7fffffff) {
+            params.addAll(List.of(histItemFilterQueryPagingParams(filter)));
+        }
+        return params.toArray();
+    }
+
+    /**
+     * Provides the paging parameters in the order they appear in the query, by default offset and page size.
+     */
+    protected Object[] histItemFilterQueryPagingParams(FilterCriteria filter) {
+        return new Object[] { filter.getPageNumber() * filter.getPageSize(), filter.getPageSize() };
+    }
+
+    /**
+     * Provides the downsampled history query for a table. The time of each window is the time of its first value,
+     * for {@link JdbcAggregation#LAST} it is the time of the last value.
+     */
+    protected String histItemAggregatedQueryProvider(FilterCriteria filter, JdbcAggregation aggregation,
+            long windowSeconds, String table) {
+        String filterString = "";
+        if (filter.getBeginDate() != null) {
+            filterString += filterString.isEmpty() ? " WHERE" : " AND";
+            filterString += " TIME>?";
+        }
+        if (filter.getEndDate() != null) {
+            filterString += filterString.isEmpty() ? " WHERE" : " AND";
+            filterString += " TIME<?";
+        }
+        String groupString = " GROUP BY " + timeBucketProvider(windowSeconds);
+        String orderString = (filter.getOrdering() == Ordering.ASCENDING) ? " ORDER BY 1 ASC" : " ORDER BY 1 DESC";
+        String queryString;
+        if (aggregation == JdbcAggregation.LAST) {
+            // time is the primary key, so the last time of each window identifies exactly one row
+            queryString = "SELECT time, value FROM " + table + " WHERE time IN (SELECT MAX(time) FROM " + table
+                    + filterString + groupString + ")" + orderString;
+        } else {
+            queryString = "SELECT MIN(time), " + aggregation.name() + "(value) FROM " + table + filterString
+                    + groupString + orderString;
+        }
+        logger.debug("JDBC::query queryString = {}", queryString);
+        return queryString;
+    }
+
+    /**
+     * Provides an expression which is equal for all times in the same window of the given length.
+     */
+    protected String timeBucketProvider(long windowSeconds) {
+        return "FLOOR(UNIX_TIMESTAMP(time) / " + windowSeconds + ")";
+    }
+
+    /**
+     * Provides the parameters for the statement created by
+     * {@link #histItemAggregatedQueryProvider(FilterCriteria, JdbcAggregation, long, String)}.
+     */
+    protected Object[] histItemAggregatedQueryParams(FilterCriteria filter, ZoneId timeZone) {
+        List<Object> params = new ArrayList<>(2);
+        ZonedDateTime beginDate = filter.getBeginDate();
+        if (beginDate != null) {
+            params.add(filterTimeAsParam(beginDate, timeZone));
+        }
+        ZonedDateTime endDate = filter.getEndDate();
+        if (endDate != null) {
+            params.add(filterTimeAsParam(endDate, timeZone));
+        }
+        return params.toArray();
+    }
+
+    /**
+     * Provides the insert statement for a table, with a parameter for the time instead of
+     * <code>tablePrimaryValue</code>.
+     */
+    protected String insertItemValueWithTimeProvider(ItemVO vo) {
+        return StringUtilsExt.replaceArrayMerge(sqlInsertItemValue,
+                new String[] { "#tableName#", "#dbType#", "#tablePrimaryValue#" },
+                new String[] { vo.getTableName(), vo.getDbType(), "?" });
+    }
+
+    /**
+     * Provides the parameters for the statement created by {@link #insertItemValueWithTimeProvider(ItemVO)}.
+     */
+    protected Object[] insertItemValueWithTimeParams(ItemVO vo, ZonedDateTime time) {
+        return new Object[] { timeAsParam(time), vo.getValue(), vo.getValue() };
+    }
+
     private String updateItemTableNamesProvider(List<ItemVO> namesList) {
         logger.debug("JDBC::updateItemTableNamesProvider namesList.size = {}", namesList.size());
         String queryString = "";
@@ -517,6 +736,61 @@ public class JdbcBaseDAO {
         }
     }
 
+    /**
+     * Converts the value of a history row. Rows of {@link JdbcAggregation#LAST} hold a stored value, so they are
+     * converted like the rows of a plain query.
+     *
+     * @param aggregation the aggregation of the query, or <code>null</code> for a plain query
+     * @param numberDecimalcount the decimals of aggregated numbers, or -1 to keep them as they are
+     * @return the state, or <code>null</code> if the value is empty
+     */
+    protected @Nullable State histItemState(Item item, @Nullable Unit<? extends Quantity<?>> unit,
+            @Nullable JdbcAggregation aggregation, int numberDecimalcount, @Nullable Object v) {
+        if (v == null) {
+            return null;
+        }
+        if (aggregation == null) {
+            return getState(item, unit, v);
+        }
+        if (aggregation == JdbcAggregation.LAST) {
+            State state = getState(item, unit, v);
+            if (numberDecimalcount > -1 && state instanceof QuantityType) {
+                QuantityType<?> quantity = (QuantityType<?>) state;
+                return QuantityType.valueOf(round(quantity.toBigDecimal(), numberDecimalcount).doubleValue(),
+                        quantity.getUnit());
+            } else if (numberDecimalcount > -1 && state instanceof DecimalType) {
+                return new DecimalType(round(((DecimalType) state).toBigDecimal(), numberDecimalcount));
+            }
+            return state;
+        }
+        return getAggregatedState(unit, v, numberDecimalcount);
+    }
+
+    /**
+     * Converts the result of an aggregate function, which may have a different type than the value column.
+     */
+    protected State getAggregatedState(@Nullable Unit<? extends Quantity<?>> unit, Object v, int numberDecimalcount) {
+        BigDecimal value = round(v instanceof BigDecimal ? (BigDecimal) v : new BigDecimal(v.toString()),
+                numberDecimalcount);
+        return unit == null ? new DecimalType(value) : QuantityType.valueOf(value.doubleValue(), unit);
+    }
+
+    private static BigDecimal round(BigDecimal value, int numberDecimalcount) {
+        // rounding HALF UP like ROUND() in the plain history query
+        return numberDecimalcount > -1 ? value.setScale(numberDecimalcount, RoundingMode.HALF_UP) : value;
+    }
+
+    protected Object timeAsParam(ZonedDateTime time) {
+        return Timestamp.from(time.toInstant());
+    }
+
+    /**
+     * Converts a time used in a query filter, the time is compared as local time of the given time zone.
+     */
+    protected Object filterTimeAsParam(ZonedDateTime time, ZoneId timeZone) {
+        return Timestamp.valueOf(time.withZoneSameInstant(timeZone).toLocalDateTime());
+    }
+
     protected ZonedDateTime objectAsDate(Object v) {
         if (v instanceof java.lang.String) {
             return ZonedDateTime.ofInstant(Timestamp.valueOf(v.toString()).toInstant(), ZoneId.systemDefault());
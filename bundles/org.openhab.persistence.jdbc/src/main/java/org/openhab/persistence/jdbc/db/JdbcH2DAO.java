@@ -12,6 +12,8 @@
  */
 package org.openhab.persistence.jdbc.db;
 
+import java.time.ZonedDateTime;
+
 import org.knowm.yank.Yank;
 import org.openhab.core.items.Item;
 import org.openhab.persistence.jdbc.dto.ItemVO;
@@ -85,6 +87,16 @@ public class JdbcH2DAO extends JdbcBaseDAO {
      * SQL generation Providers *
      ****************************/
 
+    @Override
+    protected Object[] insertItemValueWithTimeParams(ItemVO vo, ZonedDateTime time) {
+        return new Object[] { timeAsParam(time), vo.getValue() };
+    }
+
+    @Override
+    protected String timeBucketProvider(long windowSeconds) {
+        return "FLOOR(DATEDIFF('SECOND', TIMESTAMP '1970-01-01 00:00:00', time) / " + windowSeconds + ")";
+    }
+
     /*****************
      * H E L P E R S *
      *****************/
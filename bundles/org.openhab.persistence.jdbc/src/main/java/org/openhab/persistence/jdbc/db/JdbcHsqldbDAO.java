@@ -12,6 +12,8 @@
  */
 package org.openhab.persistence.jdbc.db;
 
+import java.time.ZonedDateTime;
+
 import org.knowm.yank.Yank;
 import org.openhab.core.items.Item;
 import org.openhab.persistence.jdbc.dto.ItemVO;
@@ -115,6 +117,19 @@ public class JdbcHsqldbDAO extends JdbcBaseDAO {
      * SQL generation Providers *
      ****************************/
 
+    @Override
+    protected String insertItemValueWithTimeProvider(ItemVO vo) {
+        return StringUtilsExt.replaceArrayMerge(sqlInsertItemValue,
+                new String[] { "#tableName#", "#dbType#", "#tableName#", "#tablePrimaryValue#" },
+                new String[] { vo.getTableName(), vo.getDbType(), vo.getTableName(),
+                        "CAST( ? AS " + sqlTypes.get("tablePrimaryKey") + ")" });
+    }
+
+    @Override
+    protected Object[] insertItemValueWithTimeParams(ItemVO vo, ZonedDateTime time) {
+        return new Object[] { timeAsParam(time), vo.getValue() };
+    }
+
     /*****************
      * H E L P E R S *
      *****************/
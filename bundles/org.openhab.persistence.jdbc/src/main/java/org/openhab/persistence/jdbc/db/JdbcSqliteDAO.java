@@ -12,6 +12,10 @@
  */
 package org.openhab.persistence.jdbc.db;
 
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+
 import org.knowm.yank.Yank;
 import org.openhab.core.items.Item;
 import org.openhab.persistence.jdbc.dto.ItemVO;
@@ -104,10 +108,34 @@ public class JdbcSqliteDAO extends JdbcBaseDAO {
      * SQL generation Providers *
      ****************************/
 
+    @Override
+    protected Object[] insertItemValueWithTimeParams(ItemVO vo, ZonedDateTime time) {
+        return new Object[] { timeAsParam(time), vo.getValue() };
+    }
+
+    @Override
+    protected String timeBucketProvider(long windowSeconds) {
+        return "CAST(strftime('%s', time) AS INTEGER) / " + windowSeconds;
+    }
+
     /*****************
      * H E L P E R S *
      *****************/
 
+    private static final DateTimeFormatter SQLITE_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+
+    @Override
+    protected Object filterTimeAsParam(ZonedDateTime time, ZoneId timeZone) {
+        // times are stored as text, so they are compared as text
+        return JDBC_DATE_FORMAT.format(time.withZoneSameInstant(timeZone));
+    }
+
+    @Override
+    protected Object timeAsParam(ZonedDateTime time) {
+        // same text format as produced by tablePrimaryValue
+        return SQLITE_DATE_FORMAT.format(time.withZoneSameInstant(ZoneId.systemDefault()));
+    }
+
     /******************************
      * public Getters and Setters *
      ******************************/
@@ -0,0 +1,49 @@
+/**
+ * Copyright (c) 2010-2021 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.persistence.jdbc.dto;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+
+/**
+ * Represents a prepared insert of an item value, which is written later as part of a batch.
+ *
+ * @author craigham - Initial contribution
+ */
+@NonNullByDefault
+public class ItemValueVO {
+
+    private final String itemName;
+    private final String sql;
+    private final Object[] params;
+
+    public ItemValueVO(String itemName, String sql, Object[] params) {
+        this.itemName = itemName;
+        this.sql = sql;
+        this.params = params;
+    }
+
+    public String getItemName() {
+        return itemName;
+    }
+
+    /**
+     * @return the parameterized insert statement, the same instance is used for all values of a table
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    public Object[] getParams() {
+        return params;
+    }
+}
@@ -0,0 +1,32 @@
+/**
+ * Copyright (c) 2010-2021 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.persistence.jdbc.dto;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+
+/**
+ * Aggregation functions for downsampled history queries. Each function is applied to all values in one time window.
+ *
+ * @author craigham - Initial contribution
+ */
+@NonNullByDefault
+public enum JdbcAggregation {
+    /** average of the values, for number items only */
+    AVG,
+    /** minimum of the values, for number items only */
+    MIN,
+    /** maximum of the values, for number items only */
+    MAX,
+    /** last value, for all item types */
+    LAST
+}
@@ -0,0 +1,207 @@
+/**
+ * Copyright (c) 2010-2021 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.persistence.jdbc.internal;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.core.common.NamedThreadFactory;
+import org.openhab.persistence.jdbc.db.JdbcBaseDAO;
+import org.openhab.persistence.jdbc.dto.ItemValueVO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes item values in batches. Values are queued by the caller and written by a single background thread,
+ * either when <code>batchSize</code> values are queued or when <code>batchInterval</code> has passed.
+ *
+ * @author craigham - Initial contribution
+ */
+@NonNullByDefault
+public class JdbcBatchWriter {
+
+    /** Wait until there is space in the queue */
+    public static final String POLICY_BLOCK = "block";
+    /** Drop the oldest queued value */
+    public static final String POLICY_DROP_OLDEST = "dropOldest";
+    /** Write the value directly from the calling thread */
+    public static final String POLICY_DIRECT = "direct";
+
+    private final Logger logger = LoggerFactory.getLogger(JdbcBatchWriter.class);
+
+    private final JdbcBaseDAO dao;
+    private final int batchSize;
+    private final long batchInterval;
+    private final String queueFullPolicy;
+    private final BlockingQueue<ItemValueVO> queue;
+
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile long lastFlushTime = 0;
+
+    private volatile boolean running = false;
+    private @Nullable Thread worker;
+
+    public JdbcBatchWriter(JdbcBaseDAO dao, int batchSize, int batchInterval, int queueSize, String queueFullPolicy) {
+        this.dao = dao;
+        this.batchSize = batchSize;
+        this.batchInterval = Math.max(1, batchInterval);
+        this.queueFullPolicy = queueFullPolicy;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        Thread thread = new NamedThreadFactory("jdbc-writer").newThread(this::run);
+        worker = thread;
+        thread.start();
+        logger.debug("JDBC::JdbcBatchWriter started: batchSize={} batchInterval={} ms queueFullPolicy={}", batchSize,
+                batchInterval, queueFullPolicy);
+    }
+
+    /**
+     * Stops the background thread and writes all values that are still queued.
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        Thread thread = worker;
+        worker = null;
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join(batchInterval + 5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        List<ItemValueVO> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            write(remaining);
+        }
+        logger.debug("JDBC::JdbcBatchWriter stopped: written={} dropped={}", written.get(), dropped.get());
+    }
+
+    /**
+     * Queues a value. If the queue is full, the configured <code>queueFullPolicy</code> is applied.
+     *
+     * @param value the prepared value
+     */
+    public void add(ItemValueVO value) {
+        if (queue.offer(value)) {
+            return;
+        }
+        switch (queueFullPolicy) {
+            case POLICY_DROP_OLDEST:
+                while (!queue.offer(value)) {
+                    if (queue.poll() != null) {
+                        long count = dropped.incrementAndGet();
+                        if (count % 1000 == 1) {
+                            logger.warn("JDBC::JdbcBatchWriter queue is full, {} value(s) dropped so far", count);
+                        }
+                    }
+                }
+                break;
+            case POLICY_DIRECT:
+                write(List.of(value));
+                break;
+            default:
+                try {
+                    queue.put(value);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    dropped.incrementAndGet();
+                }
+        }
+    }
+
+    private void run() {
+        List<ItemValueVO> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                long deadline = System.currentTimeMillis() + batchInterval;
+                while (batch.size() < batchSize) {
+                    long wait = deadline - System.currentTimeMillis();
+                    if (wait <= 0) {
+                        break;
+                    }
+                    ItemValueVO value = queue.poll(wait, TimeUnit.MILLISECONDS);
+                    if (value == null) {
+                        break;
+                    }
+                    batch.add(value);
+                    queue.drainTo(batch, batchSize - batch.size());
+                }
+            } catch (InterruptedException e) {
+                // stop() drains the rest of the queue
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<ItemValueVO> batch) {
+        long timerStart = System.currentTimeMillis();
+        try {
+            dao.doStoreItemValues(batch);
+            written.addAndGet(batch.size());
+        } catch (SQLException | RuntimeException e) {
+            logger.warn("JDBC::JdbcBatchWriter batch of {} values failed, writing them one by one: {}", batch.size(),
+                    e.getMessage());
+            for (ItemValueVO value : batch) {
+                try {
+                    dao.doStoreItemValue(value);
+                    written.incrementAndGet();
+                } catch (RuntimeException e2) {
+                    dropped.incrementAndGet();
+                    logger.error("JDBC::JdbcBatchWriter unable to store item '{}': {}", value.getItemName(),
+                            e2.getMessage());
+                }
+            }
+        }
+        lastFlushTime = System.currentTimeMillis() - timerStart;
+        logger.debug("JDBC::JdbcBatchWriter wrote {} values in {} ms, queued={} written={} dropped={}", batch.size(),
+                lastFlushTime, queue.size(), written.get(), dropped.get());
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public long getWritten() {
+        return written.get();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public long getLastFlushTime() {
+        return lastFlushTime;
+    }
+}
@@ -60,6 +60,11 @@ public class JdbcConfiguration {
 
     private int errReconnectThreshold = 0;
 
+    private int batchSize = 0;
+    private int batchInterval = 1000;
+    private int queueSize = 10000;
+    private String queueFullPolicy = JdbcBatchWriter.POLICY_BLOCK;
+
     public int timerCount = 0;
     public int time1000Statements = 0;
     public long timer1000 = 0;
@@ -173,6 +178,35 @@ public class JdbcConfiguration {
             logger.debug("JDBC::updateConfig: rebuildTableNames={}", rebuildTableNames);
         }
 
+        String bs = (String) configuration.get("batchSize");
+        if (bs != null && !bs.isBlank() && isNumericPattern.matcher(bs).matches()) {
+            batchSize = Integer.parseInt(bs);
+            logger.debug("JDBC::updateConfig: batchSize={}", batchSize);
+        }
+
+        String bi = (String) configuration.get("batchInterval");
+        if (bi != null && !bi.isBlank() && isNumericPattern.matcher(bi).matches()) {
+            batchInterval = Integer.parseInt(bi);
+            logger.debug("JDBC::updateConfig: batchInterval={}", batchInterval);
+        }
+
+        String qs = (String) configuration.get("queueSize");
+        if (qs != null && !qs.isBlank() && isNumericPattern.matcher(qs).matches()) {
+            queueSize = Math.max(1, Integer.parseInt(qs));
+            logger.debug("JDBC::updateConfig: queueSize={}", queueSize);
+        }
+
+        String qp = (String) configuration.get("queueFullPolicy");
+        if (qp != null && !qp.isBlank()) {
+            if (JdbcBatchWriter.POLICY_BLOCK.equals(qp) || JdbcBatchWriter.POLICY_DROP_OLDEST.equals(qp)
+                    || JdbcBatchWriter.POLICY_DIRECT.equals(qp)) {
+                queueFullPolicy = qp;
+            } else {
+                logger.warn("JDBC::updateConfig: unknown queueFullPolicy '{}', using '{}'", qp, queueFullPolicy);
+            }
+            logger.debug("JDBC::updateConfig: queueFullPolicy={}", queueFullPolicy);
+        }
+
         // undocumented
         String ac = (String) configuration.get("maximumPoolSize");
         if (ac != null && !ac.isBlank()) {
@@ -358,6 +392,22 @@ public class JdbcConfiguration {
         return tableIdDigitCount;
     }
 
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public int getBatchInterval() {
+        return batchInterval;
+    }
+
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    public String getQueueFullPolicy() {
+        return queueFullPolicy;
+    }
+
     public JdbcBaseDAO getDBDAO() {
         return dBDAO;
     }
@@ -12,11 +12,14 @@
  */
 package org.openhab.persistence.jdbc.internal;
 
+import java.time.Duration;
+import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import org.knowm.yank.Yank;
@@ -27,6 +30,7 @@ import org.openhab.core.persistence.HistoricItem;
 import org.openhab.core.persistence.PersistenceItemInfo;
 import org.openhab.persistence.jdbc.dto.ItemVO;
 import org.openhab.persistence.jdbc.dto.ItemsVO;
+import org.openhab.persistence.jdbc.dto.JdbcAggregation;
 import org.openhab.persistence.jdbc.dto.JdbcPersistenceItemInfo;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -45,7 +49,8 @@ public class JdbcMapper {
     protected int errCnt;
     protected boolean initialized = false;
     protected JdbcConfiguration conf = null;
-    protected final Map<String, String> sqlTables = new HashMap<>();
+    protected final Map<String, String> sqlTables = new ConcurrentHashMap<>();
+    protected JdbcBatchWriter batchWriter = null;
     private long afterAccessMin = 10000;
     private long afterAccessMax = 0;
     private static final String ITEM_NAME_PATTERN = "[^a-zA-Z_0-9\\-]";
@@ -153,7 +158,13 @@ public class JdbcMapper {
             return item;
         }
         long timerStart = System.currentTimeMillis();
-        conf.getDBDAO().doStoreItemValue(item, new ItemVO(tableName, null));
+        JdbcBatchWriter writer = batchWriter;
+        if (writer != null) {
+            // the time is taken now, the value is written later by the batch writer
+            writer.add(conf.getDBDAO().doPrepareItemValue(item, new ItemVO(tableName, null), ZonedDateTime.now()));
+        } else {
+            conf.getDBDAO().doStoreItemValue(item, new ItemVO(tableName, null));
+        }
         logTime("storeItemValue", timerStart, System.currentTimeMillis());
         errCnt = 0;
         return item;
@@ -177,6 +188,45 @@ public class JdbcMapper {
         return null;
     }
 
+    public List<HistoricItem> getHistItemAggregatedQuery(FilterCriteria filter, JdbcAggregation aggregation,
+            Duration window, int numberDecimalcount, String table, Item item) {
+        logger.debug(
+                "JDBC::getHistItemAggregatedQuery aggregation='{}' window='{}' numberDecimalcount='{}' table='{}' itemName='{}'",
+                aggregation, window, numberDecimalcount, table, item.getName());
+        if (table != null) {
+            long timerStart = System.currentTimeMillis();
+            List<HistoricItem> result = conf.getDBDAO().doGetHistItemAggregatedQuery(item, filter, aggregation,
+                    window.getSeconds(), numberDecimalcount, table, timeZoneProvider.getTimeZone());
+            logTime("getHistItemAggregatedQuery", timerStart, System.currentTimeMillis());
+            errCnt = 0;
+            return result;
+        } else {
+            logger.error("JDBC::getHistItemAggregatedQuery: TABLE is NULL; cannot get data from non-existent table.");
+        }
+        return null;
+    }
+
+    /****************
+     * BATCH WRITER *
+     ****************/
+    protected void startBatchWriter() {
+        stopBatchWriter();
+        if (conf.getBatchSize() > 1) {
+            JdbcBatchWriter writer = new JdbcBatchWriter(conf.getDBDAO(), conf.getBatchSize(), conf.getBatchInterval(),
+                    conf.getQueueSize(), conf.getQueueFullPolicy());
+            writer.start();
+            batchWriter = writer;
+        }
+    }
+
+    protected void stopBatchWriter() {
+        JdbcBatchWriter writer = batchWriter;
+        batchWriter = null;
+        if (writer != null) {
+            writer.stop();
+        }
+    }
+
     /***********************
      * DATABASE CONNECTION *
      ***********************/
@@ -224,6 +274,7 @@ public class JdbcMapper {
      * DATABASE TABLEHANDLING *
      **************************/
     protected void checkDBSchema() {
+        long timerStart = System.currentTimeMillis();
         // Create Items Table if does not exist
         createItemsTableIfNot(new ItemsVO());
         if (conf.getRebuildTableNames()) {
@@ -233,17 +284,25 @@ public class JdbcMapper {
         } else {
             // Reset the error counter
             errCnt = 0;
+            // one query for the whole index, item tables are created lazily when an item is stored first
             for (ItemsVO vo : getItemIDTableNames()) {
                 sqlTables.put(vo.getItemname(), getTableName(vo.getItemid(), vo.getItemname()));
             }
         }
+        logger.info("JDBC::checkDBSchema: schema bootstrap with {} item tables took {} ms", sqlTables.size(),
+                System.currentTimeMillis() - timerStart);
     }
 
-    protected String getTable(Item item) {
-        int rowId = 0;
-        ItemsVO isvo;
-        ItemVO ivo;
+    /**
+     * Get the table of an item without accessing the database.
+     *
+     * @return the table name or <code>null</code> if nothing has been stored for the item yet
+     */
+    protected String findTable(String itemName) {
+        return sqlTables.get(itemName);
+    }
 
+    protected String getTable(Item item) {
         String itemName = item.getName();
         String tableName = sqlTables.get(itemName);
 
@@ -252,6 +311,21 @@ public class JdbcMapper {
             return tableName;
         }
 
+        synchronized (this) {
+            // another thread may have created the table in the meantime
+            tableName = sqlTables.get(itemName);
+            return tableName != null ? tableName : createTable(item);
+        }
+    }
+
+    private String createTable(Item item) {
+        int rowId = 0;
+        ItemsVO isvo;
+        ItemVO ivo;
+
+        String itemName = item.getName();
+        String tableName;
+
         logger.debug("JDBC::getTable: no table found for item '{}' in sqlTables", itemName);
 
         // Create a new entry in items table
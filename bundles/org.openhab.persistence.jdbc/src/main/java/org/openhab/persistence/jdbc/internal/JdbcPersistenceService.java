@@ -12,6 +12,7 @@
  */
 package org.openhab.persistence.jdbc.internal;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -25,6 +26,7 @@ import org.openhab.core.items.GroupItem;
 import org.openhab.core.items.Item;
 import org.openhab.core.items.ItemNotFoundException;
 import org.openhab.core.items.ItemRegistry;
+import org.openhab.core.library.items.NumberItem;
 import org.openhab.core.persistence.FilterCriteria;
 import org.openhab.core.persistence.HistoricItem;
 import org.openhab.core.persistence.PersistenceItemInfo;
@@ -32,6 +34,7 @@ import org.openhab.core.persistence.PersistenceService;
 import org.openhab.core.persistence.QueryablePersistenceService;
 import org.openhab.core.persistence.strategy.PersistenceStrategy;
 import org.openhab.core.types.UnDefType;
+import org.openhab.persistence.jdbc.dto.JdbcAggregation;
 import org.osgi.framework.BundleContext;
 import org.osgi.framework.Constants;
 import org.osgi.service.component.annotations.Activate;
@@ -104,6 +107,7 @@ public class JdbcPersistenceService extends JdbcMapper implements QueryablePersi
     public void deactivate(final int reason) {
         logger.debug("JDBC::deactivate:  persistence bundle stopping. Disconnecting from database. reason={}", reason);
         // closeConnection();
+        stopBatchWriter();
         initialized = false;
     }
 
@@ -160,6 +164,28 @@ public class JdbcPersistenceService extends JdbcMapper implements QueryablePersi
      */
     @Override
     public Iterable<HistoricItem> query(FilterCriteria filter) {
+        return doQuery(filter, null, null);
+    }
+
+    /**
+     * Queries the {@link PersistenceService} for data downsampled to one value per time window. The values of each
+     * window are aggregated by the database, so only one row per window is transferred.
+     *
+     * @param filter
+     *            the filter to apply to the query, paging is not supported
+     * @param window
+     *            the length of the time windows
+     * @param aggregation
+     *            the function used to aggregate the values of a window, only {@link JdbcAggregation#LAST} is
+     *            supported for items which are not number items
+     * @return a time series of items
+     */
+    public Iterable<HistoricItem> query(FilterCriteria filter, Duration window, JdbcAggregation aggregation) {
+        return doQuery(filter, window, aggregation);
+    }
+
+    private Iterable<HistoricItem> doQuery(FilterCriteria filter, @Nullable Duration window,
+            @Nullable JdbcAggregation aggregation) {
         if (!checkDBAccessability()) {
             logger.warn("JDBC::query: database not connected, query aborted for item '{}'", filter.getItemName());
             return List.of();
@@ -191,18 +217,25 @@ public class JdbcPersistenceService extends JdbcMapper implements QueryablePersi
             }
         }
 
-        String table = sqlTables.get(itemName);
+        String table = findTable(itemName);
         if (table == null) {
-            logger.warn(
-                    "JDBC::query: unable to find table for query, no data in database for item '{}'. Current number of tables in the database: {}",
-                    itemName, sqlTables.size());
-            // if enabled, table will be created immediately
-            logger.warn("JDBC::query: try to generate the table for item '{}'", itemName);
-            table = getTable(item);
+            // the table is created when the item is stored for the first time, there is nothing to query until then
+            logger.debug("JDBC::query: no table found for item '{}', nothing has been stored yet", itemName);
+            return List.of();
         }
 
         long timerStart = System.currentTimeMillis();
-        List<HistoricItem> items = getHistItemFilterQuery(filter, conf.getNumberDecimalcount(), table, item);
+        List<HistoricItem> items;
+        if (window != null && aggregation != null) {
+            if (aggregation != JdbcAggregation.LAST && !(item instanceof NumberItem)) {
+                logger.warn("JDBC::query: aggregation {} is not supported for item '{}', using LAST", aggregation,
+                        itemName);
+                aggregation = JdbcAggregation.LAST;
+            }
+            items = getHistItemAggregatedQuery(filter, aggregation, window, conf.getNumberDecimalcount(), table, item);
+        } else {
+            items = getHistItemFilterQuery(filter, conf.getNumberDecimalcount(), table, item);
+        }
 
         logger.debug("JDBC::query: query for {} returned {} rows in {} ms", itemName, items.size(),
                 System.currentTimeMillis() - timerStart);
@@ -215,9 +248,11 @@ public class JdbcPersistenceService extends JdbcMapper implements QueryablePersi
     public void updateConfig(Map<Object, Object> configuration) {
         logger.debug("JDBC::updateConfig");
 
+        stopBatchWriter();
         conf = new JdbcConfiguration(configuration);
         if (conf.valid && checkDBAccessability()) {
             checkDBSchema();
+            startBatchWriter();
             // connection has been established ... initialization completed!
             initialized = true;
         } else {
@@ -0,0 +1,130 @@
+/**
+ * Copyright (c) 2010-2021 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.persistence.jdbc.db;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+import org.eclipse.jdt.annotation.DefaultLocation;
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.junit.jupiter.api.Test;
+import org.openhab.core.library.items.NumberItem;
+import org.openhab.core.library.items.StringItem;
+import org.openhab.core.library.types.DecimalType;
+import org.openhab.core.library.types.StringType;
+import org.openhab.core.persistence.FilterCriteria;
+import org.openhab.core.persistence.FilterCriteria.Ordering;
+import org.openhab.persistence.jdbc.dto.JdbcAggregation;
+
+/**
+ * Tests the history queries of {@link JdbcBaseDAO} and the conversion of their rows.
+ *
+ * @author craigham - Initial contribution
+ */
+@SuppressWarnings("null")
+@NonNullByDefault(value = { DefaultLocation.PARAMETER, DefaultLocation.RETURN_TYPE })
+public class JdbcBaseDAOTest {
+
+    private static final String TABLE = "item0001";
+    private static final ZoneId TIME_ZONE = ZoneId.of("Europe/Berlin");
+    private static final ZonedDateTime BEGIN = ZonedDateTime.of(2021, 3, 4, 5, 0, 0, 0, ZoneOffset.UTC);
+    private static final ZonedDateTime END = BEGIN.plusDays(1);
+
+    private final JdbcBaseDAO dao = new JdbcBaseDAO();
+
+    @Test
+    public void testFilterQueryWithDatesAndPaging() {
+        FilterCriteria filter = new FilterCriteria();
+        filter.setBeginDate(BEGIN);
+        filter.setEndDate(END);
+        filter.setPageNumber(2);
+        filter.setPageSize(10);
+
+        assertEquals(
+                "SELECT time, ROUND(value,3) FROM " + TABLE + " WHERE TIME>? AND TIME<? ORDER BY time DESC  LIMIT ?,?",
+                dao.histItemFilterQueryProvider(filter, 3, TABLE, "NumberItem"));
+        assertArrayEquals(new Object[] { Timestamp.valueOf(LocalDateTime.of(2021, 3, 4, 6, 0)),
+                Timestamp.valueOf(LocalDateTime.of(2021, 3, 5, 6, 0)), 20, 10 },
+                dao.histItemFilterQueryParams(filter, TIME_ZONE));
+    }
+
+    @Test
+    public void testFilterQueryWithoutFilter() {
+        FilterCriteria filter = new FilterCriteria();
+        filter.setOrdering(Ordering.ASCENDING);
+
+        assertEquals("SELECT time, value FROM " + TABLE + " ORDER BY time ASC",
+                dao.histItemFilterQueryProvider(filter, 3, TABLE, "StringItem"));
+        assertArrayEquals(new Object[0], dao.histItemFilterQueryParams(filter, TIME_ZONE));
+    }
+
+    @Test
+    public void testAggregatedQueryLast() {
+        FilterCriteria filter = new FilterCriteria();
+        filter.setBeginDate(BEGIN);
+        filter.setEndDate(END);
+        filter.setOrdering(Ordering.ASCENDING);
+
+        assertEquals("SELECT time, value FROM " + TABLE + " WHERE time IN (SELECT MAX(time) FROM " + TABLE
+                + " WHERE TIME>? AND TIME<? GROUP BY FLOOR(UNIX_TIMESTAMP(time) / 60)) ORDER BY 1 ASC",
+                dao.histItemAggregatedQueryProvider(filter, JdbcAggregation.LAST, 60, TABLE));
+        assertEquals(2, dao.histItemAggregatedQueryParams(filter, TIME_ZONE).length);
+    }
+
+    @Test
+    public void testAggregatedQueryAverage() {
+        FilterCriteria filter = new FilterCriteria();
+
+        assertEquals("SELECT MIN(time), AVG(value) FROM " + TABLE
+                + " GROUP BY FLOOR(UNIX_TIMESTAMP(time) / 300) ORDER BY 1 DESC",
+                dao.histItemAggregatedQueryProvider(filter, JdbcAggregation.AVG, 300, TABLE));
+        assertArrayEquals(new Object[0], dao.histItemAggregatedQueryParams(filter, TIME_ZONE));
+    }
+
+    @Test
+    public void testEmptyValuesAreSkipped() {
+        NumberItem item = new NumberItem("number");
+
+        assertNull(dao.histItemState(item, null, null, 3, null));
+        assertNull(dao.histItemState(item, null, JdbcAggregation.AVG, 3, null));
+        assertNull(dao.histItemState(item, null, JdbcAggregation.LAST, 3, null));
+    }
+
+    @Test
+    public void testAggregatedNumbersAreRounded() {
+        NumberItem item = new NumberItem("number");
+
+        assertEquals(new DecimalType(new BigDecimal("1.235")),
+                dao.histItemState(item, null, JdbcAggregation.AVG, 3, Double.valueOf(1.23456)));
+        assertEquals(new DecimalType(new BigDecimal("2")),
+                dao.histItemState(item, null, JdbcAggregation.MAX, 0, new BigDecimal("1.5")));
+        assertEquals(new DecimalType(new BigDecimal("1.23456")),
+                dao.histItemState(item, null, JdbcAggregation.MIN, -1, Double.valueOf(1.23456)));
+        assertEquals(new DecimalType(new BigDecimal("2.346")),
+                dao.histItemState(item, null, JdbcAggregation.LAST, 3, Double.valueOf(2.34567)));
+    }
+
+    @Test
+    public void testLastValueOfOtherItemsIsTheStoredValue() {
+        StringItem item = new StringItem("string");
+
+        assertEquals(new StringType("1.23456"), dao.histItemState(item, null, JdbcAggregation.LAST, 3, "1.23456"));
+        assertEquals(new StringType("value"), dao.histItemState(item, null, null, 3, "value"));
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright (c) 2010-2021 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.persistence.jdbc.internal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.eclipse.jdt.annotation.DefaultLocation;
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.junit.jupiter.api.Test;
+import org.openhab.persistence.jdbc.db.JdbcBaseDAO;
+import org.openhab.persistence.jdbc.dto.ItemValueVO;
+
+/**
+ * Tests {@link JdbcBatchWriter} with a DAO that records the written values.
+ *
+ * @author craigham - Initial contribution
+ */
+@SuppressWarnings("null")
+@NonNullByDefault(value = { DefaultLocation.PARAMETER, DefaultLocation.RETURN_TYPE })
+public class JdbcBatchWriterTest {
+
+    private static class RecordingDAO extends JdbcBaseDAO {
+        private final List<List<ItemValueVO>> batches = new CopyOnWriteArrayList<>();
+        private final List<ItemValueVO> singleValues = new CopyOnWriteArrayList<>();
+        private volatile boolean failBatches = false;
+
+        @Override
+        public void doStoreItemValues(List<ItemValueVO> values) throws SQLException {
+            if (failBatches) {
+                throw new SQLException("batch failed");
+            }
+            batches.add(List.copyOf(values));
+        }
+
+        @Override
+        public void doStoreItemValue(ItemValueVO value) {
+            singleValues.add(value);
+        }
+    }
+
+    private final RecordingDAO dao = new RecordingDAO();
+
+    private static ItemValueVO value(int i) {
+        return new ItemValueVO("item", "INSERT", new Object[] { i });
+    }
+
+    @Test
+    public void fullBatchIsWrittenBeforeTheInterval() throws InterruptedException {
+        JdbcBatchWriter writer = new JdbcBatchWriter(dao, 3, 60000, 100, JdbcBatchWriter.POLICY_BLOCK);
+        writer.start();
+        try {
+            for (int i = 0; i < 3; i++) {
+                writer.add(value(i));
+            }
+            long deadline = System.currentTimeMillis() + 5000;
+            while (writer.getWritten() < 3 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(3, writer.getWritten());
+            assertEquals(1, dao.batches.size());
+            assertEquals(3, dao.batches.get(0).size());
+        } finally {
+            writer.stop();
+        }
+    }
+
+    @Test
+    public void stopWritesQueuedValues() {
+        JdbcBatchWriter writer = new JdbcBatchWriter(dao, 100, 60000, 100, JdbcBatchWriter.POLICY_BLOCK);
+        writer.start();
+        for (int i = 0; i < 5; i++) {
+            writer.add(value(i));
+        }
+        writer.stop();
+
+        assertEquals(5, writer.getWritten());
+        assertEquals(0, writer.getQueueSize());
+        assertEquals(5, dao.batches.stream().mapToInt(List::size).sum());
+    }
+
+    @Test
+    public void failedBatchIsWrittenValueByValue() {
+        dao.failBatches = true;
+        JdbcBatchWriter writer = new JdbcBatchWriter(dao, 100, 60000, 100, JdbcBatchWriter.POLICY_BLOCK);
+        writer.start();
+        writer.add(value(1));
+        writer.add(value(2));
+        writer.stop();
+
+        assertEquals(2, writer.getWritten());
+        assertEquals(2, dao.singleValues.size());
+    }
+
+    @Test
+    public void dropOldestKeepsTheNewestValues() {
+        JdbcBatchWriter writer = new JdbcBatchWriter(dao, 100, 60000, 2, JdbcBatchWriter.POLICY_DROP_OLDEST);
+        for (int i = 0; i < 3; i++) {
+            writer.add(value(i));
+        }
+
+        assertEquals(1, writer.getDropped());
+        assertEquals(2, writer.getQueueSize());
+    }
+
+    @Test
+    public void directWritesWhenTheQueueIsFull() {
+        JdbcBatchWriter writer = new JdbcBatchWriter(dao, 100, 60000, 1, JdbcBatchWriter.POLICY_DIRECT);
+        writer.add(value(1));
+        writer.add(value(2));
+
+        assertEquals(1, writer.getWritten());
+        assertEquals(1, writer.getQueueSize());
+        assertEquals(1, dao.batches.size());
+        assertEquals(2, dao.batches.get(0).get(0).getParams()[0]);
+    }
+}
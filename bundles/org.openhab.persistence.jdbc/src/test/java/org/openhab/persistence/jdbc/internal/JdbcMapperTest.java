@@ -0,0 +1,113 @@
+/**
+ * Copyright (c) 2010-2021 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.persistence.jdbc.internal;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jdt.annotation.DefaultLocation;
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openhab.core.i18n.TimeZoneProvider;
+import org.openhab.core.library.items.NumberItem;
+import org.openhab.persistence.jdbc.db.JdbcBaseDAO;
+import org.openhab.persistence.jdbc.dto.ItemVO;
+import org.openhab.persistence.jdbc.dto.ItemsVO;
+
+/**
+ * Tests the item table index of {@link JdbcMapper}, without a database.
+ *
+ * @author craigham - Initial contribution
+ */
+@SuppressWarnings("null")
+@NonNullByDefault(value = { DefaultLocation.PARAMETER, DefaultLocation.RETURN_TYPE })
+public class JdbcMapperTest {
+
+    private static class TestMapper extends JdbcMapper {
+        private final AtomicInteger createdEntries = new AtomicInteger();
+        private final AtomicInteger createdTables = new AtomicInteger();
+
+        TestMapper() {
+            super(mock(TimeZoneProvider.class));
+        }
+
+        @Override
+        public ItemsVO createNewEntryInItemsTable(ItemsVO vo) {
+            vo.setItemid(createdEntries.incrementAndGet());
+            return vo;
+        }
+
+        @Override
+        public ItemVO createItemTable(ItemVO vo) {
+            createdTables.incrementAndGet();
+            return vo;
+        }
+    }
+
+    private final TestMapper mapper = new TestMapper();
+
+    @BeforeEach
+    public void setUp() {
+        JdbcConfiguration conf = mock(JdbcConfiguration.class);
+        when(conf.getDBDAO()).thenReturn(new JdbcBaseDAO());
+        when(conf.getTableNamePrefix()).thenReturn("item");
+        when(conf.getTableIdDigitCount()).thenReturn(4);
+        mapper.conf = conf;
+    }
+
+    @Test
+    public void findTableDoesNotCreateTables() {
+        assertNull(mapper.findTable("number"));
+        assertEquals(0, mapper.createdEntries.get());
+    }
+
+    @Test
+    public void tableIsCreatedOnceAndIndexed() {
+        NumberItem item = new NumberItem("number");
+
+        assertEquals("item0001", mapper.getTable(item));
+        assertEquals("item0001", mapper.getTable(item));
+        assertEquals("item0001", mapper.findTable("number"));
+        assertEquals(1, mapper.createdEntries.get());
+        assertEquals(1, mapper.createdTables.get());
+    }
+
+    @Test
+    public void concurrentFirstStoresCreateOneTable() throws Exception {
+        NumberItem item = new NumberItem("number");
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Callable<String>> tasks = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                tasks.add(() -> mapper.getTable(item));
+            }
+            for (Future<String> result : executor.invokeAll(tasks)) {
+                assertEquals("item0001", result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, mapper.createdEntries.get());
+        assertEquals(1, mapper.createdTables.get());
+    }
+}
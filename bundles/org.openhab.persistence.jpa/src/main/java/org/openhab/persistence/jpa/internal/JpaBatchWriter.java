@@ -0,0 +1,243 @@
+/**
+ * Copyright (c) 2010-2021 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.persistence.jpa.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.core.common.NamedThreadFactory;
+import org.openhab.persistence.jpa.internal.model.JpaPersistentItem;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persists items in batches. Items are queued by the caller and persisted by a single background thread in one
+ * transaction per batch, either when <code>batchSize</code> items are queued or when <code>batchInterval</code> has
+ * passed.
+ *
+ * The background thread keeps its {@link EntityManager} open between batches and clears it after every commit. If a
+ * batch fails, its items are persisted one by one, so a single bad item does not lose the others.
+ *
+ * @author craigham - Initial contribution
+ */
+@NonNullByDefault
+public class JpaBatchWriter {
+    private static final int QUEUE_SIZE = 10000;
+
+    private final Logger logger = LoggerFactory.getLogger(JpaBatchWriter.class);
+
+    private final Supplier<@Nullable EntityManagerFactory> entityManagerFactory;
+    private final int batchSize;
+    private final long batchInterval;
+    private final BlockingQueue<JpaPersistentItem> queue = new LinkedBlockingQueue<>(QUEUE_SIZE);
+
+    // only used by the writer thread, or after it has stopped
+    private @Nullable EntityManager em;
+
+    private volatile boolean running = false;
+    private @Nullable Thread worker;
+
+    public JpaBatchWriter(Supplier<@Nullable EntityManagerFactory> entityManagerFactory, int batchSize,
+            int batchInterval) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.batchSize = batchSize;
+        this.batchInterval = Math.max(1, batchInterval);
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        Thread thread = new NamedThreadFactory("jpa-writer").newThread(this::run);
+        worker = thread;
+        thread.start();
+        logger.debug("JPA batch writer started: batchSize={} batchInterval={} ms", batchSize, batchInterval);
+    }
+
+    /**
+     * Stops the background thread, which persists all items that are still queued and closes its entity manager.
+     *
+     * If the thread does not stop in time, e.g. in a commit that hangs, it still owns the entity manager. The queued
+     * items are then persisted with a new one.
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        Thread thread = worker;
+        worker = null;
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join(batchInterval + 5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        List<JpaPersistentItem> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (thread != null && thread.isAlive()) {
+            logger.warn("JPA batch writer did not stop in time, persisting {} queued items with a new EntityManager",
+                    remaining.size());
+            // a writer that is not started has an entity manager of its own
+            new JpaBatchWriter(entityManagerFactory, batchSize, (int) batchInterval).flush(remaining);
+        } else {
+            flush(remaining);
+        }
+        logger.debug("JPA batch writer stopped");
+    }
+
+    /**
+     * Queues an item, waits if the queue is full.
+     *
+     * @param item the item
+     */
+    public void add(JpaPersistentItem item) {
+        try {
+            queue.put(item);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Interrupted while queueing item {}, it is dropped", item.getName());
+        }
+    }
+
+    private void run() {
+        List<JpaPersistentItem> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                long deadline = System.currentTimeMillis() + batchInterval;
+                while (batch.size() < batchSize) {
+                    long wait = deadline - System.currentTimeMillis();
+                    if (wait <= 0) {
+                        break;
+                    }
+                    JpaPersistentItem item = queue.poll(wait, TimeUnit.MILLISECONDS);
+                    if (item == null) {
+                        break;
+                    }
+                    batch.add(item);
+                    queue.drainTo(batch, batchSize - batch.size());
+                }
+            } catch (InterruptedException e) {
+                // stopping, the rest of the queue is persisted below
+            }
+            if (!batch.isEmpty()) {
+                persist(batch);
+                batch.clear();
+            }
+        }
+        queue.drainTo(batch);
+        flush(batch);
+    }
+
+    /**
+     * Persists the items in batches and closes the entity manager.
+     */
+    private void flush(List<JpaPersistentItem> items) {
+        for (int from = 0; from < items.size(); from += batchSize) {
+            persist(items.subList(from, Math.min(items.size(), from + batchSize)));
+        }
+        closeEntityManager();
+    }
+
+    private void persist(List<JpaPersistentItem> batch) {
+        long start = System.currentTimeMillis();
+        if (persistInTransaction(batch)) {
+            logger.debug("Persisted {} items in {} ms", batch.size(), System.currentTimeMillis() - start);
+            return;
+        }
+        if (batch.size() > 1) {
+            logger.debug("Persisting {} items one by one", batch.size());
+            int failed = 0;
+            for (JpaPersistentItem item : batch) {
+                if (!persistInTransaction(List.of(item))) {
+                    failed++;
+                }
+            }
+            if (failed > 0) {
+                logger.warn("Failed to persist {} of {} items", failed, batch.size());
+            }
+        }
+    }
+
+    private boolean persistInTransaction(List<JpaPersistentItem> items) {
+        EntityManager localEm = getEntityManager();
+        if (localEm == null) {
+            logger.warn("No EntityManagerFactory, dropping {} items", items.size());
+            return true;
+        }
+        try {
+            // In RESOURCE_LOCAL calls to EntityManager require a begin/commit
+            localEm.getTransaction().begin();
+            for (JpaPersistentItem item : items) {
+                localEm.persist(item);
+            }
+            localEm.getTransaction().commit();
+            // detach the persisted items, so the persistence context does not grow
+            localEm.clear();
+            return true;
+        } catch (Exception e) {
+            logger.error("Error on persisting {} items! Rolling back!", items.size(), e);
+            try {
+                if (localEm.getTransaction().isActive()) {
+                    localEm.getTransaction().rollback();
+                }
+            } catch (Exception re) {
+                logger.debug("Rollback failed: {}", re.getMessage());
+            }
+            // the entity manager may be unusable after an error, start over with a new one
+            closeEntityManager();
+            for (JpaPersistentItem item : items) {
+                // persist() may have assigned an id that was never committed
+                item.setId(null);
+            }
+            return false;
+        }
+    }
+
+    private @Nullable EntityManager getEntityManager() {
+        EntityManager localEm = em;
+        if (localEm == null || !localEm.isOpen()) {
+            EntityManagerFactory factory = entityManagerFactory.get();
+            if (factory == null) {
+                return null;
+            }
+            localEm = factory.createEntityManager();
+            em = localEm;
+        }
+        return localEm;
+    }
+
+    private void closeEntityManager() {
+        EntityManager localEm = em;
+        em = null;
+        if (localEm != null && localEm.isOpen()) {
+            try {
+                localEm.close();
+            } catch (Exception e) {
+                logger.debug("Error closing EntityManager: {}", e.getMessage());
+            }
+        }
+    }
+}
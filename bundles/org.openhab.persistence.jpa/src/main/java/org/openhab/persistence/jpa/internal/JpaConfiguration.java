@@ -32,6 +32,8 @@ public class JpaConfiguration {
     private static final String CFG_USERNAME = "user";
     private static final String CFG_PASSWORD = "password";
     private static final String CFG_SYNCMAPPING = "syncmappings";
+    private static final String CFG_BATCH_SIZE = "batchSize";
+    private static final String CFG_BATCH_INTERVAL = "batchInterval";
 
     public static boolean isInitialized = false;
 
@@ -40,6 +42,8 @@ public class JpaConfiguration {
     public final String dbUserName;
     public final String dbPassword;
     public final String dbSyncMapping;
+    public final int batchSize;
+    public final int batchInterval;
 
     public JpaConfiguration(final Map<String, Object> properties) {
         logger.debug("Update config...");
@@ -77,7 +81,25 @@ public class JpaConfiguration {
         }
         dbSyncMapping = (String) properties.get(CFG_SYNCMAPPING);
 
+        batchSize = parseInt(properties, CFG_BATCH_SIZE, 0);
+        logger.debug("batchSize: {}", batchSize);
+        batchInterval = parseInt(properties, CFG_BATCH_INTERVAL, 1000);
+        logger.debug("batchInterval: {}", batchInterval);
+
         isInitialized = true;
         logger.debug("Update config... done");
     }
+
+    private int parseInt(final Map<String, Object> properties, String key, int defaultValue) {
+        Object param = properties.get(key);
+        if (param == null || param.toString().isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(param.toString().trim());
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid value '{}' for {} in jpa.cfg, using {}", param, key, defaultValue);
+            return defaultValue;
+        }
+    }
 }
@@ -22,6 +22,8 @@ import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
 import javax.persistence.Table;
 import javax.persistence.Temporal;
 import javax.persistence.TemporalType;
@@ -39,8 +41,18 @@ import org.openhab.core.types.UnDefType;
 
 @Entity
 @Table(name = "HISTORIC_ITEM")
+@NamedQueries({
+        @NamedQuery(name = JpaPersistentItem.QUERY_BY_REAL_NAME_ASC, query = "SELECT n FROM JpaPersistentItem n"
+                + " WHERE n.realName = :itemName AND n.timestamp >= :beginDate AND n.timestamp <= :endDate"
+                + " ORDER BY n.timestamp ASC"),
+        @NamedQuery(name = JpaPersistentItem.QUERY_BY_REAL_NAME_DESC, query = "SELECT n FROM JpaPersistentItem n"
+                + " WHERE n.realName = :itemName AND n.timestamp >= :beginDate AND n.timestamp <= :endDate"
+                + " ORDER BY n.timestamp DESC") })
 public class JpaPersistentItem implements HistoricItem {
 
+    public static final String QUERY_BY_REAL_NAME_ASC = "JpaPersistentItem.findByRealNameAsc";
+    public static final String QUERY_BY_REAL_NAME_DESC = "JpaPersistentItem.findByRealNameDesc";
+
     @Id
     @GeneratedValue(strategy = GenerationType.AUTO)
     private Long id;
@@ -0,0 +1,213 @@
+/**
+ * Copyright (c) 2010-2021 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.persistence.mapdb.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.openhab.core.library.types.DateTimeType;
+import org.openhab.core.library.types.DecimalType;
+import org.openhab.core.library.types.HSBType;
+import org.openhab.core.library.types.OnOffType;
+import org.openhab.core.library.types.OpenClosedType;
+import org.openhab.core.library.types.PercentType;
+import org.openhab.core.library.types.PointType;
+import org.openhab.core.library.types.QuantityType;
+import org.openhab.core.library.types.StringType;
+import org.openhab.core.library.types.UpDownType;
+import org.openhab.core.types.State;
+import org.openhab.core.types.TypeParser;
+
+/**
+ * Compact binary encoding of a {@link MapDbItem}. The item name is not encoded, as it is the key of the map.
+ *
+ * The value starts with a format version, the timestamp and a tag for the state type. Numbers are written as
+ * binary {@link BigDecimal}s, enum states are written as their tag only, other known states as their string
+ * representation. Unknown state types are written with their class name, like the {@link StateTypeAdapter}.
+ *
+ * @author craigham - Initial contribution
+ */
+@NonNullByDefault
+public class MapDbItemCodec {
+    private static final byte FORMAT_VERSION = 1;
+
+    private static final byte TYPE_OTHER = 0;
+    private static final byte TYPE_DECIMAL = 1;
+    private static final byte TYPE_PERCENT = 2;
+    private static final byte TYPE_QUANTITY = 3;
+    private static final byte TYPE_STRING = 4;
+    private static final byte TYPE_ON = 5;
+    private static final byte TYPE_OFF = 6;
+    private static final byte TYPE_OPEN = 7;
+    private static final byte TYPE_CLOSED = 8;
+    private static final byte TYPE_UP = 9;
+    private static final byte TYPE_DOWN = 10;
+    private static final byte TYPE_HSB = 11;
+    private static final byte TYPE_DATETIME = 12;
+    private static final byte TYPE_POINT = 13;
+
+    private MapDbItemCodec() {
+        // only static methods
+    }
+
+    public static byte[] encode(MapDbItem item) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT_VERSION);
+            out.writeLong(item.getTimestamp().toInstant().toEpochMilli());
+            writeState(out, item.getState());
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @param name the item name, which is the key of the encoded value
+     * @param value the encoded value
+     * @return the decoded item
+     * @throws IOException if the value can't be decoded
+     */
+    public static MapDbItem decode(String name, byte[] value) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(value))) {
+            byte version = in.readByte();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unknown format version " + version);
+            }
+            MapDbItem item = new MapDbItem();
+            item.setName(name);
+            item.setTimestamp(new Date(in.readLong()));
+            item.setState(readState(in));
+            return item;
+        }
+    }
+
+    private static void writeState(DataOutputStream out, State state) throws IOException {
+        // HSBType extends PercentType, which extends DecimalType, so the subclasses have to be checked first
+        if (state instanceof HSBType) {
+            out.writeByte(TYPE_HSB);
+            writeString(out, state.toFullString());
+        } else if (state instanceof PercentType) {
+            out.writeByte(TYPE_PERCENT);
+            writeDecimal(out, ((PercentType) state).toBigDecimal());
+        } else if (state instanceof DecimalType) {
+            out.writeByte(TYPE_DECIMAL);
+            writeDecimal(out, ((DecimalType) state).toBigDecimal());
+        } else if (state instanceof QuantityType) {
+            out.writeByte(TYPE_QUANTITY);
+            writeString(out, state.toFullString());
+        } else if (state instanceof StringType) {
+            out.writeByte(TYPE_STRING);
+            writeString(out, state.toFullString());
+        } else if (state instanceof OnOffType) {
+            out.writeByte(state == OnOffType.ON ? TYPE_ON : TYPE_OFF);
+        } else if (state instanceof OpenClosedType) {
+            out.writeByte(state == OpenClosedType.OPEN ? TYPE_OPEN : TYPE_CLOSED);
+        } else if (state instanceof UpDownType) {
+            out.writeByte(state == UpDownType.UP ? TYPE_UP : TYPE_DOWN);
+        } else if (state instanceof DateTimeType) {
+            out.writeByte(TYPE_DATETIME);
+            writeString(out, state.toFullString());
+        } else if (state instanceof PointType) {
+            out.writeByte(TYPE_POINT);
+            writeString(out, state.toFullString());
+        } else {
+            out.writeByte(TYPE_OTHER);
+            writeString(out, state.getClass().getName());
+            writeString(out, state.toFullString());
+        }
+    }
+
+    private static State readState(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case TYPE_DECIMAL:
+                return new DecimalType(readDecimal(in));
+            case TYPE_PERCENT:
+                return new PercentType(readDecimal(in));
+            case TYPE_QUANTITY:
+                return new QuantityType<>(readString(in));
+            case TYPE_STRING:
+                return new StringType(readString(in));
+            case TYPE_ON:
+                return OnOffType.ON;
+            case TYPE_OFF:
+                return OnOffType.OFF;
+            case TYPE_OPEN:
+                return OpenClosedType.OPEN;
+            case TYPE_CLOSED:
+                return OpenClosedType.CLOSED;
+            case TYPE_UP:
+                return UpDownType.UP;
+            case TYPE_DOWN:
+                return UpDownType.DOWN;
+            case TYPE_HSB:
+                return new HSBType(readString(in));
+            case TYPE_DATETIME:
+                return new DateTimeType(readString(in));
+            case TYPE_POINT:
+                return new PointType(readString(in));
+            case TYPE_OTHER:
+                return readOtherState(readString(in), readString(in));
+            default:
+                throw new IOException("Unknown state type " + type);
+        }
+    }
+
+    private static State readOtherState(String typeName, String value) throws IOException {
+        try {
+            @SuppressWarnings("unchecked")
+            Class<? extends State> valueType = (Class<? extends State>) Class.forName(typeName);
+            State state = TypeParser.parseState(List.of(valueType), value);
+            if (state == null) {
+                throw new IOException("Can't parse '" + value + "' as " + typeName);
+            }
+            return state;
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Unknown state type " + typeName, e);
+        }
+    }
+
+    private static void writeDecimal(DataOutputStream out, BigDecimal value) throws IOException {
+        byte[] unscaled = value.unscaledValue().toByteArray();
+        out.writeInt(value.scale());
+        out.writeShort(unscaled.length);
+        out.write(unscaled);
+    }
+
+    private static BigDecimal readDecimal(DataInputStream in) throws IOException {
+        int scale = in.readInt();
+        byte[] unscaled = new byte[in.readUnsignedShort()];
+        in.readFully(unscaled);
+        return new BigDecimal(new BigInteger(unscaled), scale);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -18,22 +18,30 @@ import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.eclipse.jdt.annotation.Nullable;
 import org.mapdb.DB;
 import org.mapdb.DBMaker;
+import org.mapdb.Serializer;
 import org.openhab.core.OpenHAB;
 import org.openhab.core.common.ThreadPoolManager;
+import org.openhab.core.config.core.ConfigurableService;
 import org.openhab.core.items.Item;
 import org.openhab.core.persistence.FilterCriteria;
 import org.openhab.core.persistence.HistoricItem;
@@ -43,8 +51,10 @@ import org.openhab.core.persistence.QueryablePersistenceService;
 import org.openhab.core.persistence.strategy.PersistenceStrategy;
 import org.openhab.core.types.State;
 import org.openhab.core.types.UnDefType;
+import org.osgi.framework.Constants;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.ConfigurationPolicy;
 import org.osgi.service.component.annotations.Deactivate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -60,30 +70,68 @@ import com.google.gson.GsonBuilder;
  * @author Martin Kühl - Port to 3.x
  */
 @NonNullByDefault
-@Component(service = { PersistenceService.class, QueryablePersistenceService.class })
+@Component(service = { PersistenceService.class,
+        QueryablePersistenceService.class }, configurationPid = "org.openhab.mapdb", configurationPolicy = ConfigurationPolicy.OPTIONAL, //
+        property = Constants.SERVICE_PID + "=org.openhab.mapdb")
+@ConfigurableService(category = "persistence", label = "MapDB Persistence Service", description_uri = MapDbPersistenceService.CONFIG_URI)
 public class MapDbPersistenceService implements QueryablePersistenceService {
 
+    protected static final String CONFIG_URI = "persistence:mapdb";
+
     private static final String SERVICE_ID = "mapdb";
     private static final String SERVICE_LABEL = "MapDB";
     private static final Path DB_DIR = new File(OpenHAB.getUserDataFolder(), "persistence").toPath().resolve("mapdb");
     private static final Path BACKUP_DIR = DB_DIR.resolve("backup");
     private static final String DB_FILE_NAME = "storage.mapdb";
+    private static final String MAP_NAME = "items";
+    // map of earlier versions, with the items serialized to JSON
+    private static final String JSON_MAP_NAME = "itemStore";
+
+    // changes are committed at most this long after they have been stored
+    private static final long COMMIT_INTERVAL_MS = 1000;
+    // changes are committed right away once this many keys have been stored since the last commit
+    private static final int COMMIT_DIRTY_KEYS = 1000;
+
+    // items that haven't been restored by then are dropped from the restore snapshot
+    private static final long RESTORE_SNAPSHOT_TTL_MINUTES = 5;
+
+    /** memory map the database file instead of reading it with random access file operations */
+    private static final String MMAP_PARAM = "mmap";
 
     private final Logger logger = LoggerFactory.getLogger(MapDbPersistenceService.class);
 
     private final ExecutorService threadPool = ThreadPoolManager.getPool(getClass().getSimpleName());
+    private final ScheduledExecutorService scheduler = ThreadPoolManager
+            .getScheduledPool(getClass().getSimpleName());
 
     /** holds the local instance of the MapDB database */
 
     private @NonNullByDefault({}) DB db;
-    private @NonNullByDefault({}) Map<String, String> map;
+    private @NonNullByDefault({}) Map<String, byte[]> map;
+
+    /** names of all stored items, so the item info doesn't need to read the values */
+    private final Set<String> itemNames = ConcurrentHashMap.newKeySet();
 
+    private final AtomicInteger dirtyKeys = new AtomicInteger();
+    private final AtomicBoolean commitScheduled = new AtomicBoolean();
+
+    /**
+     * All items as read on activation. The RESTORE strategy queries each item once on startup, so these queries are
+     * served from memory instead of one lookup in the database file per item. Entries are removed when they have been
+     * queried or the item is stored again.
+     */
+    private final Map<String, HistoricItem> restoreSnapshot = new ConcurrentHashMap<>();
+    private @Nullable ScheduledFuture<?> restoreSnapshotExpiry;
+
+    // only used to migrate the JSON map of earlier versions
     private transient Gson mapper = new GsonBuilder().registerTypeHierarchyAdapter(State.class, new StateTypeAdapter())
             .create();
 
     @Activate
-    public void activate() {
+    public void activate(final @Nullable Map<String, Object> config) {
         logger.debug("MapDB persistence service is being activated");
+        Object mmapValue = config == null ? null : config.get(MMAP_PARAM);
+        boolean mmap = Boolean.TRUE.equals(mmapValue) || "true".equalsIgnoreCase(String.valueOf(mmapValue));
 
         try {
             Files.createDirectories(DB_DIR);
@@ -95,8 +143,8 @@ public class MapDbPersistenceService implements QueryablePersistenceService {
 
         File dbFile = DB_DIR.resolve(DB_FILE_NAME).toFile();
         try {
-            db = DBMaker.newFileDB(dbFile).closeOnJvmShutdown().make();
-            map = db.createTreeMap("itemStore").makeOrGet();
+            db = openDb(dbFile, mmap);
+            map = openMap();
         } catch (RuntimeException re) {
             Throwable cause = re.getCause();
             if (cause instanceof ClassNotFoundException) {
@@ -128,22 +176,68 @@ public class MapDbPersistenceService implements QueryablePersistenceService {
                     return;
                 }
 
-                db = DBMaker.newFileDB(dbFile).closeOnJvmShutdown().make();
-                map = db.createTreeMap("itemStore").makeOrGet();
+                db = openDb(dbFile, mmap);
+                map = openMap();
             } else {
                 logger.warn("Failed to create or open the MapDB: {}", re.getMessage());
                 logger.warn("MapDB persistence service activation has failed.");
+                return;
             }
         }
+        itemNames.addAll(map.keySet());
+
+        long start = System.currentTimeMillis();
+        restoreSnapshot.putAll(restoreAll());
+        restoreSnapshotExpiry = scheduler.schedule(restoreSnapshot::clear, RESTORE_SNAPSHOT_TTL_MINUTES,
+                TimeUnit.MINUTES);
+        logger.debug("Read {} items for restore in {} ms", restoreSnapshot.size(), System.currentTimeMillis() - start);
         logger.debug("MapDB persistence service is now activated");
     }
 
+    private DB openDb(File dbFile, boolean mmap) {
+        DBMaker<?> maker = DBMaker.newFileDB(dbFile).closeOnJvmShutdown();
+        if (mmap) {
+            maker = maker.mmapFileEnableIfSupported();
+        }
+        return maker.make();
+    }
+
+    private Map<String, byte[]> openMap() {
+        Map<String, byte[]> itemMap = db.createTreeMap(MAP_NAME).valueSerializer(Serializer.BYTE_ARRAY).makeOrGet();
+        if (db.exists(JSON_MAP_NAME)) {
+            Map<String, String> jsonMap = db.getTreeMap(JSON_MAP_NAME);
+            int migrated = 0;
+            for (Map.Entry<String, String> entry : jsonMap.entrySet()) {
+                Optional<MapDbItem> item = deserializeJson(entry.getValue());
+                if (item.isPresent()) {
+                    Optional<byte[]> value = serialize(item.get());
+                    if (value.isPresent()) {
+                        itemMap.put(entry.getKey(), value.get());
+                        migrated++;
+                    }
+                }
+            }
+            db.delete(JSON_MAP_NAME);
+            db.commit();
+            logger.info("Migrated {} items from JSON to the binary format", migrated);
+        }
+        return itemMap;
+    }
+
     @Deactivate
     public void deactivate() {
         logger.debug("MapDB persistence service deactivated");
         if (db != null) {
+            commit();
             db.close();
         }
+        itemNames.clear();
+        ScheduledFuture<?> expiry = restoreSnapshotExpiry;
+        if (expiry != null) {
+            expiry.cancel(false);
+            restoreSnapshotExpiry = null;
+        }
+        restoreSnapshot.clear();
     }
 
     @Override
@@ -158,8 +252,11 @@ public class MapDbPersistenceService implements QueryablePersistenceService {
 
     @Override
     public Set<PersistenceItemInfo> getItemInfo() {
-        return map.values().stream().map(this::deserialize).flatMap(MapDbPersistenceService::streamOptional)
-                .collect(Collectors.<PersistenceItemInfo> toUnmodifiableSet());
+        return itemNames.stream().map(name -> {
+            MapDbItem item = new MapDbItem();
+            item.setName(name);
+            return item;
+        }).collect(Collectors.<PersistenceItemInfo> toUnmodifiableSet());
     }
 
     @Override
@@ -182,30 +279,70 @@ public class MapDbPersistenceService implements QueryablePersistenceService {
         mItem.setName(localAlias);
         mItem.setState(state);
         mItem.setTimestamp(new Date());
-        String json = serialize(mItem);
-        map.put(localAlias, json);
-        commit();
-        if (logger.isDebugEnabled()) {
-            logger.debug("Stored '{}' with state '{}' as '{}' in MapDB database", localAlias, state, json);
+        Optional<byte[]> value = serialize(mItem);
+        if (value.isEmpty()) {
+            return;
         }
+        restoreSnapshot.remove(localAlias);
+        map.put(localAlias, value.get());
+        itemNames.add(localAlias);
+        scheduleCommit();
+        logger.debug("Stored '{}' with state '{}' in MapDB database", localAlias, state);
     }
 
     @Override
     public Iterable<HistoricItem> query(FilterCriteria filter) {
-        String json = map.get(filter.getItemName());
-        if (json == null) {
+        String itemName = filter.getItemName();
+        if (itemName == null) {
+            return List.of();
+        }
+        HistoricItem restored = restoreSnapshot.remove(itemName);
+        if (restored != null) {
+            return List.of(restored);
+        }
+        byte[] value = map.get(itemName);
+        if (value == null) {
             return List.of();
         }
-        Optional<MapDbItem> item = deserialize(json);
+        Optional<MapDbItem> item = deserialize(itemName, value);
         return item.isPresent() ? List.of(item.get()) : List.of();
     }
 
-    private String serialize(MapDbItem item) {
-        return mapper.toJson(item);
+    /**
+     * Reads all stored items in one sequential pass over the database and decodes them in parallel.
+     *
+     * @return all stored items by name
+     */
+    public Map<String, HistoricItem> restoreAll() {
+        List<Map.Entry<String, byte[]>> entries = new ArrayList<>(map.entrySet());
+        return entries.parallelStream().map(entry -> deserialize(entry.getKey(), entry.getValue()))
+                .flatMap(Optional::stream)
+                .collect(Collectors.<MapDbItem, String, HistoricItem> toUnmodifiableMap(MapDbItem::getName,
+                        item -> item));
+    }
+
+    private Optional<byte[]> serialize(MapDbItem item) {
+        try {
+            return Optional.of(MapDbItemCodec.encode(item));
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Couldn't serialize item '{}': {}", item.getName(), e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private Optional<MapDbItem> deserialize(String name, byte[] value) {
+        try {
+            MapDbItem item = MapDbItemCodec.decode(name, value);
+            logger.debug("Deserialized '{}' with state '{}'", item.getName(), item.getState());
+            return Optional.of(item);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Couldn't deserialize item '{}': {}", name, e.getMessage());
+            return Optional.empty();
+        }
     }
 
     @SuppressWarnings("null")
-    private Optional<MapDbItem> deserialize(String json) {
+    private Optional<MapDbItem> deserializeJson(String json) {
         MapDbItem item = mapper.<MapDbItem> fromJson(json, MapDbItem.class);
         if (item == null || !item.isValid()) {
             logger.warn("Deserialized invalid item: {}", item);
@@ -217,12 +354,25 @@ public class MapDbPersistenceService implements QueryablePersistenceService {
         return Optional.of(item);
     }
 
-    private void commit() {
-        threadPool.submit(() -> db.commit());
+    /**
+     * Commits are coalesced, as each commit syncs the whole store to disk. A commit is made at most
+     * {@link #COMMIT_INTERVAL_MS} after a change, or right away once {@link #COMMIT_DIRTY_KEYS} changes are pending.
+     */
+    private void scheduleCommit() {
+        if (dirtyKeys.incrementAndGet() == COMMIT_DIRTY_KEYS) {
+            threadPool.submit(this::commit);
+        } else if (commitScheduled.compareAndSet(false, true)) {
+            scheduler.schedule(this::commit, COMMIT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
     }
 
-    private static <T> Stream<T> streamOptional(Optional<T> opt) {
-        return opt.isPresent() ? Stream.of(opt.get()) : Stream.empty();
+    private synchronized void commit() {
+        commitScheduled.set(false);
+        int dirty = dirtyKeys.getAndSet(0);
+        if (dirty > 0 && db != null && !db.isClosed()) {
+            db.commit();
+            logger.trace("Committed {} changed items", dirty);
+        }
     }
 
     @Override
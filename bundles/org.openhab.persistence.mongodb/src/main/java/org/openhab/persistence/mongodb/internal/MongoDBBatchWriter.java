@@ -0,0 +1,196 @@
+/**
+ * Copyright (c) 2010-2021 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.persistence.mongodb.internal;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.core.common.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mongodb.BulkWriteException;
+import com.mongodb.BulkWriteOperation;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+
+/**
+ * Inserts documents in batches. Documents are queued by the caller and inserted by a single background thread with
+ * one unordered bulk insert per collection, either when <code>batchSize</code> documents are queued or when
+ * <code>batchInterval</code> has passed.
+ *
+ * @author craigham - Initial contribution
+ */
+@NonNullByDefault
+public class MongoDBBatchWriter {
+    private static final int QUEUE_SIZE = 10000;
+
+    private final Logger logger = LoggerFactory.getLogger(MongoDBBatchWriter.class);
+
+    private final Function<String, @Nullable DBCollection> collectionProvider;
+    private final int batchSize;
+    private final long batchInterval;
+    private final BlockingQueue<PendingDocument> queue = new LinkedBlockingQueue<>(QUEUE_SIZE);
+
+    private volatile boolean running = false;
+    private @Nullable Thread worker;
+
+    private static class PendingDocument {
+        private final String collectionName;
+        private final DBObject document;
+
+        private PendingDocument(String collectionName, DBObject document) {
+            this.collectionName = collectionName;
+            this.document = document;
+        }
+    }
+
+    /**
+     * @param collectionProvider returns the connected collection for a collection name, or <code>null</code> if the
+     *            database isn't available
+     */
+    public MongoDBBatchWriter(Function<String, @Nullable DBCollection> collectionProvider, int batchSize,
+            int batchInterval) {
+        this.collectionProvider = collectionProvider;
+        this.batchSize = batchSize;
+        this.batchInterval = Math.max(1, batchInterval);
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        Thread thread = new NamedThreadFactory("mongodb-writer").newThread(this::run);
+        worker = thread;
+        thread.start();
+        logger.debug("MongoDB batch writer started: batchSize={} batchInterval={} ms", batchSize, batchInterval);
+    }
+
+    /**
+     * Stops the background thread, which inserts all documents that are still queued.
+     *
+     * If the thread does not stop in time, e.g. in an insert that hangs, the documents it has not taken from the queue
+     * yet are inserted by the caller.
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        Thread thread = worker;
+        worker = null;
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join(batchInterval + 5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        List<PendingDocument> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (thread != null && thread.isAlive()) {
+            logger.warn("MongoDB batch writer did not stop in time, inserting {} queued documents", remaining.size());
+        }
+        if (!remaining.isEmpty()) {
+            // the batch the thread is inserting is not touched, it stays with the thread
+            insert(remaining);
+        }
+        logger.debug("MongoDB batch writer stopped");
+    }
+
+    /**
+     * Queues a document, waits if the queue is full.
+     *
+     * @param collectionName the name of the collection
+     * @param document the document
+     */
+    public void add(String collectionName, DBObject document) {
+        try {
+            queue.put(new PendingDocument(collectionName, document));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Interrupted while queueing document for collection {}, it is dropped", collectionName);
+        }
+    }
+
+    private void run() {
+        List<PendingDocument> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                long deadline = System.currentTimeMillis() + batchInterval;
+                while (batch.size() < batchSize) {
+                    long wait = deadline - System.currentTimeMillis();
+                    if (wait <= 0) {
+                        break;
+                    }
+                    PendingDocument document = queue.poll(wait, TimeUnit.MILLISECONDS);
+                    if (document == null) {
+                        break;
+                    }
+                    batch.add(document);
+                    queue.drainTo(batch, batchSize - batch.size());
+                }
+            } catch (InterruptedException e) {
+                // stopping, the rest of the queue is inserted below
+            }
+            if (!batch.isEmpty()) {
+                insert(batch);
+                batch.clear();
+            }
+        }
+        queue.drainTo(batch);
+        if (!batch.isEmpty()) {
+            insert(batch);
+        }
+    }
+
+    private void insert(List<PendingDocument> batch) {
+        Map<String, List<DBObject>> byCollection = new LinkedHashMap<>();
+        for (PendingDocument pending : batch) {
+            byCollection.computeIfAbsent(pending.collectionName, name -> new ArrayList<>()).add(pending.document);
+        }
+        for (Map.Entry<String, List<DBObject>> entry : byCollection.entrySet()) {
+            DBCollection collection = collectionProvider.apply(entry.getKey());
+            if (collection == null) {
+                logger.warn("No connection to database, {} documents for collection {} are dropped",
+                        entry.getValue().size(), entry.getKey());
+                continue;
+            }
+            long start = System.currentTimeMillis();
+            try {
+                // unordered, so one failing document doesn't stop the others from being inserted
+                BulkWriteOperation bulk = collection.initializeUnorderedBulkOperation();
+                entry.getValue().forEach(bulk::insert);
+                bulk.execute();
+                logger.debug("MongoDB inserted {} documents into {} in {} ms", entry.getValue().size(),
+                        entry.getKey(), System.currentTimeMillis() - start);
+            } catch (BulkWriteException e) {
+                logger.warn("MongoDB failed to insert {} of {} documents into {}: {}", e.getWriteErrors().size(),
+                        entry.getValue().size(), entry.getKey(), e.getMessage());
+            } catch (RuntimeException e) {
+                logger.error("MongoDB failed to insert {} documents into {}: {}", entry.getValue().size(),
+                        entry.getKey(), e.getMessage());
+            }
+        }
+    }
+}
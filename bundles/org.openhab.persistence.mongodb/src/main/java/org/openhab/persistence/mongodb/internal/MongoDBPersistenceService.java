@@ -17,10 +17,12 @@ import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.bson.types.ObjectId;
 import org.eclipse.jdt.annotation.NonNullByDefault;
@@ -60,6 +62,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.mongodb.BasicDBObject;
+import com.mongodb.DB;
 import com.mongodb.DBCollection;
 import com.mongodb.DBCursor;
 import com.mongodb.DBObject;
@@ -83,15 +86,35 @@ public class MongoDBPersistenceService implements QueryablePersistenceService {
     private static final String FIELD_TIMESTAMP = "timestamp";
     private static final String FIELD_VALUE = "value";
 
+    private static final int MAX_PAGE_BOUNDARIES = 100;
+
     private final Logger logger = LoggerFactory.getLogger(MongoDBPersistenceService.class);
 
     private String url = "";
     private String db = "";
     private String collection = "";
     private boolean collectionPerItem;
+    private int batchSize = 0;
+    private int batchInterval = 1000;
 
     private boolean initialized = false;
 
+    // collections that exist with their index on the current connection
+    private final Set<String> preparedCollections = ConcurrentHashMap.newKeySet();
+
+    // last document of recently queried pages, so the next page can continue from there instead of skipping
+    private final Map<String, DBObject> pageBoundaries = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f,
+            true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, DBObject> eldest) {
+            return size() > MAX_PAGE_BOUNDARIES;
+        }
+    });
+
+    private @Nullable MongoDBBatchWriter batchWriter;
+
     protected final ItemRegistry itemRegistry;
 
     private @Nullable MongoClient cl;
@@ -127,16 +150,46 @@ public class MongoDBPersistenceService implements QueryablePersistenceService {
         collection = dbCollection == null ? "" : dbCollection;
         collectionPerItem = dbCollection == null || dbCollection.isBlank();
 
+        batchSize = getIntConfig(config, "batchSize", 0);
+        batchInterval = getIntConfig(config, "batchInterval", 1000);
+        logger.debug("MongoDB batchSize {}, batchInterval {} ms", batchSize, batchInterval);
+
         if (!tryConnectToDatabase()) {
             logger.warn("Failed to connect to MongoDB server. Trying to reconnect later.");
         }
 
+        if (batchSize > 0) {
+            MongoDBBatchWriter writer = new MongoDBBatchWriter(
+                    collectionName -> tryConnectToDatabase() ? connectToCollection(collectionName) : null, batchSize,
+                    batchInterval);
+            writer.start();
+            batchWriter = writer;
+        }
+
         initialized = true;
     }
 
+    private int getIntConfig(Map<String, Object> config, String key, int defaultValue) {
+        Object value = config.get(key);
+        if (value == null || value.toString().isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.toString().trim());
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid value '{}' for mongodb:{}, using {}", value, key, defaultValue);
+            return defaultValue;
+        }
+    }
+
     @Deactivate
     public void deactivate(final int reason) {
         logger.debug("MongoDB persistence bundle stopping. Disconnecting from database.");
+        MongoDBBatchWriter writer = batchWriter;
+        batchWriter = null;
+        if (writer != null) {
+            writer.stop();
+        }
         disconnectFromDatabase();
     }
 
@@ -163,6 +216,26 @@ public class MongoDBPersistenceService implements QueryablePersistenceService {
             return;
         }
 
+        String realItemName = item.getName();
+        String collectionName = collectionPerItem ? realItemName : this.collection;
+        String name = (alias != null) ? alias : realItemName;
+        Object value = this.convertValue(item.getState());
+
+        DBObject obj = new BasicDBObject();
+        obj.put(FIELD_ID, new ObjectId());
+        obj.put(FIELD_ITEM, name);
+        obj.put(FIELD_REALNAME, realItemName);
+        obj.put(FIELD_TIMESTAMP, new Date());
+        obj.put(FIELD_VALUE, value);
+
+        MongoDBBatchWriter writer = batchWriter;
+        if (writer != null) {
+            // the writer connects when the batch is inserted
+            writer.add(collectionName, obj);
+            logger.debug("MongoDB queued {}={}", name, value);
+            return;
+        }
+
         // Connect to mongodb server if we're not already connected
         // If we can't connect, log.
         if (!tryConnectToDatabase()) {
@@ -172,9 +245,6 @@ public class MongoDBPersistenceService implements QueryablePersistenceService {
             return;
         }
 
-        String realItemName = item.getName();
-        String collectionName = collectionPerItem ? realItemName : this.collection;
-
         @Nullable
         DBCollection collection = connectToCollection(collectionName);
 
@@ -183,16 +253,7 @@ public class MongoDBPersistenceService implements QueryablePersistenceService {
             return;
         }
 
-        String name = (alias != null) ? alias : realItemName;
-        Object value = this.convertValue(item.getState());
-
-        DBObject obj = new BasicDBObject();
-        obj.put(FIELD_ID, new ObjectId());
-        obj.put(FIELD_ITEM, name);
-        obj.put(FIELD_REALNAME, realItemName);
-        obj.put(FIELD_TIMESTAMP, new Date());
-        obj.put(FIELD_VALUE, value);
-        collection.save(obj);
+        collection.insert(obj);
 
         logger.debug("MongoDB save {}={}", name, value);
     }
@@ -296,11 +357,18 @@ public class MongoDBPersistenceService implements QueryablePersistenceService {
                 return null;
             }
 
-            DBCollection mongoCollection = db.getDB(this.db).getCollection(collectionName);
+            DB database = db.getDB(this.db);
+            if (preparedCollections.contains(collectionName)) {
+                return database.getCollection(collectionName);
+            }
+
+            DBCollection mongoCollection = database.getCollection(collectionName);
 
+            // covers the item filter, the keyset predicate and the sort of paged queries
             BasicDBObject idx = new BasicDBObject();
-            idx.append(FIELD_ITEM, 1).append(FIELD_TIMESTAMP, 1);
+            idx.append(FIELD_ITEM, 1).append(FIELD_TIMESTAMP, 1).append(FIELD_ID, 1);
             mongoCollection.createIndex(idx);
+            preparedCollections.add(collectionName);
 
             return mongoCollection;
         } catch (Exception e) {
@@ -318,6 +386,7 @@ public class MongoDBPersistenceService implements QueryablePersistenceService {
         }
 
         cl = null;
+        preparedCollections.clear();
     }
 
     @Override
@@ -381,11 +450,33 @@ public class MongoDBPersistenceService implements QueryablePersistenceService {
         logger.debug("Query: {}", query);
 
         Integer sortDir = (filter.getOrdering() == Ordering.ASCENDING) ? 1 : -1;
-        DBCursor cursor = collection.find(query).sort(new BasicDBObject(FIELD_TIMESTAMP, sortDir))
-                .skip(filter.getPageNumber() * filter.getPageSize()).limit(filter.getPageSize());
+        int pageNumber = filter.getPageNumber();
+        int pageSize = filter.getPageSize();
+        // _id breaks ties between documents with the same timestamp, so pages don't overlap
+        BasicDBObject sort = new BasicDBObject(FIELD_TIMESTAMP, sortDir).append(FIELD_ID, sortDir);
+
+        // continue after the last document of the previous page if it was queried before, otherwise skip to the page
+        String pageKey = collectionName + "|" + query + "|" + sortDir + "|" + pageSize + "|";
+        @Nullable
+        DBObject boundary = pageNumber > 0 ? pageBoundaries.get(pageKey + (pageNumber - 1)) : null;
+        DBCursor cursor;
+        if (boundary != null) {
+            String op = sortDir > 0 ? "$gt" : "$lt";
+            Object timestamp = boundary.get(FIELD_TIMESTAMP);
+            BasicDBObject after = new BasicDBObject("$or",
+                    List.of(new BasicDBObject(FIELD_TIMESTAMP, new BasicDBObject(op, timestamp)),
+                            new BasicDBObject(FIELD_TIMESTAMP, timestamp).append(FIELD_ID,
+                                    new BasicDBObject(op, boundary.get(FIELD_ID)))));
+            cursor = collection.find(new BasicDBObject("$and", List.of(query, after))).sort(sort).limit(pageSize);
+        } else {
+            cursor = collection.find(query).sort(sort).skip(pageNumber * pageSize).limit(pageSize);
+        }
 
+        @Nullable
+        BasicDBObject last = null;
         while (cursor.hasNext()) {
             BasicDBObject obj = (BasicDBObject) cursor.next();
+            last = obj;
 
             final State state;
             if (item instanceof NumberItem) {
@@ -409,6 +500,11 @@ public class MongoDBPersistenceService implements QueryablePersistenceService {
                     ZonedDateTime.ofInstant(obj.getDate(FIELD_TIMESTAMP).toInstant(), ZoneId.systemDefault())));
         }
 
+        if (last != null && items.size() == pageSize) {
+            pageBoundaries.put(pageKey + pageNumber,
+                    new BasicDBObject(FIELD_TIMESTAMP, last.get(FIELD_TIMESTAMP)).append(FIELD_ID, last.get(FIELD_ID)));
+        }
+
         return items;
     }
 
@@ -0,0 +1,229 @@
+/**
+ * Copyright (c) 2010-2021 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.persistence.rrd4j.internal;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.rrd4j.core.RrdDb;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link RRD4jDbPool} keeps a bounded number of {@link RrdDb} instances open, so that storing and querying
+ * does not need to open and parse the database file on every call.
+ *
+ * Every database has its own lock, so operations on different items do not block each other. When more databases
+ * than the configured capacity are open, the least recently used ones that are not in use are closed.
+ *
+ * @author craigham - Initial contribution
+ */
+@NonNullByDefault
+public class RRD4jDbPool {
+
+    public static final int DEFAULT_CAPACITY = 500;
+
+    private final Logger logger = LoggerFactory.getLogger(RRD4jDbPool.class);
+
+    /**
+     * Factory used for opening (or creating) the database for a given name
+     */
+    @FunctionalInterface
+    public interface RrdDbFactory {
+        @Nullable
+        RrdDb open(String name) throws IOException;
+    }
+
+    /**
+     * A handle to a pooled database. The database is exclusively locked by the holder of the handle until
+     * {@link RRD4jDbPool#release(Handle)} is called.
+     */
+    public static class Handle {
+        private final String name;
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile @Nullable RrdDb db;
+        // guarded by the monitor on handles
+        private int users = 0;
+        private boolean closeOnRelease = false;
+
+        private Handle(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public @Nullable RrdDb getDb() {
+            return db;
+        }
+    }
+
+    private final RrdDbFactory factory;
+    private final Map<String, Handle> handles = new LinkedHashMap<>(16, 0.75f, true);
+    // handles that were in use when closeAll was called, with the action to run once they are all closed
+    private final List<Closing> closings = new ArrayList<>();
+    private int capacity;
+
+    private static class Closing {
+        private final List<Handle> handles;
+        private final Runnable onClosed;
+
+        private Closing(List<Handle> handles, Runnable onClosed) {
+            this.handles = handles;
+            this.onClosed = onClosed;
+        }
+    }
+
+    public RRD4jDbPool(RrdDbFactory factory, int capacity) {
+        this.factory = factory;
+        this.capacity = capacity;
+    }
+
+    public void setCapacity(int capacity) {
+        synchronized (handles) {
+            this.capacity = capacity;
+            evictIdle();
+        }
+    }
+
+    /**
+     * Acquire the database with the given name. The database is opened if it is not already in the pool. Each call
+     * to this method must be followed by a call to {@link #release(Handle)}.
+     *
+     * @param name the name of the database
+     * @return the handle, {@link Handle#getDb()} returns <code>null</code> if the database could not be opened
+     * @throws IOException if opening the database failed
+     */
+    public Handle acquire(String name) throws IOException {
+        Handle handle;
+        synchronized (handles) {
+            handle = handles.get(name);
+            if (handle == null) {
+                handle = new Handle(name);
+                handles.put(name, handle);
+            }
+            handle.users++;
+        }
+        handle.lock.lock();
+        try {
+            if (handle.db == null) {
+                handle.db = factory.open(name);
+            }
+        } catch (IOException | RuntimeException e) {
+            release(handle);
+            throw e;
+        }
+        return handle;
+    }
+
+    /**
+     * Release a handle acquired by {@link #acquire(String)}.
+     *
+     * @param handle the handle
+     */
+    public void release(Handle handle) {
+        handle.lock.unlock();
+        synchronized (handles) {
+            handle.users--;
+            if (handle.users == 0 && handle.closeOnRelease) {
+                handles.remove(handle.name, handle);
+                close(handle);
+                closed(handle);
+            } else if (handle.db == null && handle.users == 0) {
+                // do not keep entries for databases that could not be opened
+                handles.remove(handle.name, handle);
+            }
+            evictIdle();
+        }
+    }
+
+    /**
+     * Close all databases and remove them from the pool. Databases that are in use are closed when they are released
+     * by their last user and are opened again by the next {@link #acquire(String)}.
+     *
+     * @param onClosed called once all databases that were open are closed, by this call or by the last release
+     */
+    public void closeAll(Runnable onClosed) {
+        List<Handle> inUse = new ArrayList<>();
+        synchronized (handles) {
+            Iterator<Handle> iterator = handles.values().iterator();
+            while (iterator.hasNext()) {
+                Handle handle = iterator.next();
+                if (handle.users == 0) {
+                    iterator.remove();
+                    close(handle);
+                } else {
+                    handle.closeOnRelease = true;
+                    inUse.add(handle);
+                }
+            }
+            if (!inUse.isEmpty()) {
+                logger.debug("{} rrd4j database(s) still in use, they will be closed when released", inUse.size());
+                closings.add(new Closing(inUse, onClosed));
+                return;
+            }
+        }
+        onClosed.run();
+    }
+
+    private void closed(Handle handle) {
+        // caller must hold the monitor on handles
+        Iterator<Closing> iterator = closings.iterator();
+        while (iterator.hasNext()) {
+            Closing closing = iterator.next();
+            if (closing.handles.remove(handle) && closing.handles.isEmpty()) {
+                iterator.remove();
+                closing.onClosed.run();
+            }
+        }
+    }
+
+    private void evictIdle() {
+        // caller must hold the monitor on handles
+        if (handles.size() <= capacity) {
+            return;
+        }
+        List<Handle> evicted = new ArrayList<>();
+        Iterator<Handle> iterator = handles.values().iterator();
+        while (handles.size() > capacity && iterator.hasNext()) {
+            Handle handle = iterator.next();
+            if (handle.users == 0) {
+                iterator.remove();
+                evicted.add(handle);
+            }
+        }
+        // closing is done while still holding the monitor, otherwise a concurrent acquire could open
+        // a second instance for the same file before this one is closed
+        evicted.forEach(this::close);
+    }
+
+    private void close(Handle handle) {
+        RrdDb db = handle.db;
+        handle.db = null;
+        if (db != null) {
+            try {
+                db.close();
+            } catch (IOException e) {
+                logger.debug("Error closing rrd4j database '{}': {}", handle.name, e.getMessage());
+            }
+        }
+    }
+}
@@ -12,13 +12,13 @@
  */
 package org.openhab.persistence.rrd4j.internal;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
@@ -67,14 +67,18 @@ import org.openhab.core.types.State;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.ConfigurationPolicy;
+import org.osgi.service.component.annotations.Deactivate;
 import org.osgi.service.component.annotations.Modified;
 import org.osgi.service.component.annotations.Reference;
 import org.rrd4j.ConsolFun;
 import org.rrd4j.DsType;
 import org.rrd4j.core.FetchData;
 import org.rrd4j.core.FetchRequest;
+import org.rrd4j.core.RrdBackendFactory;
 import org.rrd4j.core.RrdDb;
 import org.rrd4j.core.RrdDef;
+import org.rrd4j.core.RrdNioBackendFactory;
+import org.rrd4j.core.RrdRandomAccessFileBackendFactory;
 import org.rrd4j.core.Sample;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -89,8 +93,8 @@ import org.slf4j.LoggerFactory;
  * @author Karel Goderis - remove TimerThread dependency
  */
 @NonNullByDefault
-@Component(service = { PersistenceService.class,
-        QueryablePersistenceService.class }, configurationPid = "org.openhab.rrd4j", configurationPolicy = ConfigurationPolicy.OPTIONAL)
+@Component(service = { PersistenceService.class, QueryablePersistenceService.class,
+        RRD4jPersistenceService.class }, configurationPid = "org.openhab.rrd4j", configurationPolicy = ConfigurationPolicy.OPTIONAL)
 public class RRD4jPersistenceService implements QueryablePersistenceService {
 
     private static final String DEFAULT_OTHER = "default_other";
@@ -107,11 +111,35 @@ public class RRD4jPersistenceService implements QueryablePersistenceService {
 
     private static final String DATASOURCE_STATE = "state";
 
+    private static final String CONFIG_POOL_SIZE = "poolSize";
+    private static final String CONFIG_BACKEND = "backend";
+    private static final String CONFIG_SYNC_INTERVAL = "syncInterval";
+    private static final Set<String> SERVICE_CONFIG_KEYS = Set.of("service.pid", "component.name", CONFIG_POOL_SIZE,
+            CONFIG_BACKEND, CONFIG_SYNC_INTERVAL);
+
+    private static final String BACKEND_FILE = "file";
+    private static final String BACKEND_NIO = "nio";
+    private static final int DEFAULT_SYNC_INTERVAL = 300;
+
+    private static final long FLUSH_INTERVAL_MS = 1000;
+
     public static final String DB_FOLDER = getUserPersistenceDataFolder() + File.separator + "rrd4j";
 
     private final Logger logger = LoggerFactory.getLogger(RRD4jPersistenceService.class);
 
-    private final Map<String, ScheduledFuture<?>> scheduledJobs = new HashMap<>();
+    private final Map<String, RRD4jSampleBuffer> sampleBuffers = new ConcurrentHashMap<>();
+
+    private final Set<String> dirtyBuffers = ConcurrentHashMap.newKeySet();
+
+    // time in milliseconds when samples were last written to the database of an item
+    private final Map<String, Long> lastUpdateTimes = new ConcurrentHashMap<>();
+
+    private @Nullable ScheduledFuture<?> flushJob;
+
+    private volatile @Nullable RrdBackendFactory backendFactory;
+    private String backendConfig = "";
+
+    private final RRD4jDbPool dbPool = new RRD4jDbPool(this::getDB, RRD4jDbPool.DEFAULT_CAPACITY);
 
     protected final ItemRegistry itemRegistry;
 
@@ -131,95 +159,159 @@ public class RRD4jPersistenceService implements QueryablePersistenceService {
     }
 
     @Override
-    public synchronized void store(final Item item, @Nullable final String alias) {
+    public void store(final Item item, @Nullable final String alias) {
         if (!isSupportedItemType(item)) {
             logger.trace("Ignoring item '{}' since its type {} is not supported", item.getName(), item.getType());
             return;
         }
         final String name = alias == null ? item.getName() : alias;
-        RrdDb db = getDB(name);
-        if (db != null) {
-            ConsolFun function = getConsolidationFunction(db);
-            long now = System.currentTimeMillis() / 1000;
-            if (function != ConsolFun.AVERAGE) {
-                try {
-                    // we store the last value again, so that the value change
-                    // in the database is not interpolated, but
-                    // happens right at this spot
-                    if (now - 1 > db.getLastUpdateTime()) {
-                        // only do it if there is not already a value
-                        double lastValue = db.getLastDatasourceValue(DATASOURCE_STATE);
-                        if (!Double.isNaN(lastValue)) {
-                            Sample sample = db.createSample();
-                            sample.setTime(now - 1);
-                            sample.setValue(DATASOURCE_STATE, lastValue);
-                            sample.update();
-                            logger.debug("Stored '{}' as value '{}' in rrd4j database (again)", name, lastValue);
-                        }
-                    }
-                } catch (IOException e) {
-                    logger.debug("Error storing last value (again): {}", e.getMessage());
+        Double value = getValue(item);
+        if (value == null) {
+            return;
+        }
+        // the sample is only queued here, writing to the database is done by the flush job
+        sampleBuffers.computeIfAbsent(name, k -> new RRD4jSampleBuffer()).add(System.currentTimeMillis() / 1000,
+                value);
+        dirtyBuffers.add(name);
+    }
+
+    private @Nullable Double getValue(Item item) {
+        Double value = null;
+
+        if (item instanceof NumberItem && item.getState() instanceof QuantityType) {
+            NumberItem nItem = (NumberItem) item;
+            QuantityType<?> qState = (QuantityType<?>) item.getState();
+            Unit<? extends Quantity<?>> unit = nItem.getUnit();
+            if (unit != null) {
+                QuantityType<?> convertedState = qState.toUnit(unit);
+                if (convertedState != null) {
+                    value = convertedState.doubleValue();
+                } else {
+                    logger.warn(
+                            "Failed to convert state '{}' to unit '{}'. Please check your item definition for correctness.",
+                            qState, unit);
                 }
+            } else {
+                value = qState.doubleValue();
             }
+        } else {
+            DecimalType state = item.getStateAs(DecimalType.class);
+            if (state != null) {
+                value = state.toBigDecimal().doubleValue();
+            }
+        }
+        return value;
+    }
+
+    private void flushPendingSamples() {
+        Iterator<String> iterator = dirtyBuffers.iterator();
+        while (iterator.hasNext()) {
+            String name = iterator.next();
+            iterator.remove();
             try {
-                Sample sample = db.createSample();
-                sample.setTime(now);
-
-                Double value = null;
-
-                if (item instanceof NumberItem && item.getState() instanceof QuantityType) {
-                    NumberItem nItem = (NumberItem) item;
-                    QuantityType<?> qState = (QuantityType<?>) item.getState();
-                    Unit<? extends Quantity<?>> unit = nItem.getUnit();
-                    if (unit != null) {
-                        QuantityType<?> convertedState = qState.toUnit(unit);
-                        if (convertedState != null) {
-                            value = convertedState.doubleValue();
-                        } else {
-                            logger.warn(
-                                    "Failed to convert state '{}' to unit '{}'. Please check your item definition for correctness.",
-                                    qState, unit);
-                        }
-                    } else {
-                        value = qState.doubleValue();
-                    }
-                } else {
-                    DecimalType state = item.getStateAs(DecimalType.class);
-                    if (state != null) {
-                        value = state.toBigDecimal().doubleValue();
-                    }
-                }
-                if (value != null) {
-                    if (db.getDatasource(DATASOURCE_STATE).getType() == DsType.COUNTER) { // counter values must be
-                                                                                          // adjusted by stepsize
-                        value = value * db.getRrdDef().getStep();
-                    }
-                    sample.setValue(DATASOURCE_STATE, value);
+                scheduler.execute(() -> flushPendingSamples(name));
+            } catch (RejectedExecutionException e) {
+                // this happens if the system is shut down
+                logger.debug("Could not flush samples for '{}': {}", name, e.getMessage());
+            }
+        }
+    }
+
+    private void flushPendingSamples(String name) {
+        RRD4jSampleBuffer buffer = sampleBuffers.get(name);
+        if (buffer == null || buffer.isEmpty()) {
+            return;
+        }
+        RRD4jDbPool.Handle handle;
+        try {
+            handle = dbPool.acquire(name);
+        } catch (IOException e) {
+            logger.warn("Could not open rrd4j database for '{}': {}", name, e.getMessage());
+            return;
+        }
+        try {
+            RrdDb db = handle.getDb();
+            if (db != null) {
+                flushPendingSamples(db, name, buffer);
+            } else {
+                buffer.drain();
+            }
+        } finally {
+            dbPool.release(handle);
+        }
+    }
+
+    private void flushPendingSamples(RrdDb db, String name, RRD4jSampleBuffer buffer) {
+        // caller must hold the handle of the database
+        ConsolFun function = getConsolidationFunction(db);
+        long step;
+        DsType dsType;
+        try {
+            step = db.getRrdDef().getStep();
+            dsType = db.getDatasource(DATASOURCE_STATE).getType();
+        } catch (IOException e) {
+            logger.warn("Could not read rrd4j database definition for '{}': {}", name, e.getMessage());
+            return;
+        }
+        buffer.configure(step, function == ConsolFun.AVERAGE);
+        int dropped = buffer.getAndResetDropped();
+        if (dropped > 0) {
+            logger.debug("Dropped {} samples for '{}' since they could not be written in time", dropped, name);
+        }
+        List<RRD4jSampleBuffer.PendingSample> pendingSamples = buffer.drain();
+        for (RRD4jSampleBuffer.PendingSample pendingSample : pendingSamples) {
+            storeValue(db, name, pendingSample.timestamp, pendingSample.value, function, dsType, step);
+        }
+        if (!pendingSamples.isEmpty()) {
+            // the time must change with every write, so a chart rendered in the same millisecond is outdated
+            lastUpdateTimes.merge(name, System.currentTimeMillis(), (last, now) -> Math.max(last + 1, now));
+        }
+    }
+
+    /**
+     * Returns when samples were last written to the database of an item by this service, without accessing the
+     * database.
+     *
+     * @param name the name of the database, which is the item name
+     * @return the time in milliseconds, or 0 if no samples have been written since the service was started
+     */
+    public long getLastUpdateTime(String name) {
+        Long lastUpdateTime = lastUpdateTimes.get(name);
+        return lastUpdateTime == null ? 0 : lastUpdateTime;
+    }
+
+    private void storeValue(RrdDb db, String name, long timestamp, double value, ConsolFun function, DsType dsType,
+            long step) {
+        try {
+            long lastUpdate = db.getLastUpdateTime();
+            if (function != ConsolFun.AVERAGE && timestamp - 1 > lastUpdate) {
+                // we store the last value again, so that the value change
+                // in the database is not interpolated, but
+                // happens right at this spot
+                double lastValue = db.getLastDatasourceValue(DATASOURCE_STATE);
+                if (!Double.isNaN(lastValue)) {
+                    Sample sample = db.createSample();
+                    sample.setTime(timestamp - 1);
+                    sample.setValue(DATASOURCE_STATE, lastValue);
                     sample.update();
-                    logger.debug("Stored '{}' as value '{}' in rrd4j database", name, value);
+                    lastUpdate = timestamp - 1;
+                    logger.debug("Stored '{}' as value '{}' in rrd4j database (again)", name, lastValue);
                 }
-            } catch (IllegalArgumentException e) {
-                String message = e.getMessage();
-                if (message != null && message.contains("at least one second step is required")) {
-                    // we try to store the value one second later
-                    ScheduledFuture<?> job = scheduledJobs.get(name);
-                    if (job != null) {
-                        job.cancel(true);
-                        scheduledJobs.remove(name);
-                    }
-                    job = scheduler.schedule(() -> store(item, name), 1, TimeUnit.SECONDS);
-                    scheduledJobs.put(name, job);
-                } else {
-                    logger.warn("Could not persist '{}' to rrd4j database: {}", name, e.getMessage());
-                }
-            } catch (Exception e) {
-                logger.warn("Could not persist '{}' to rrd4j database: {}", name, e.getMessage());
-            }
-            try {
-                db.close();
-            } catch (IOException e) {
-                logger.debug("Error closing rrd4j database: {}", e.getMessage());
             }
+
+            // rrd4j requires at least one second between two samples, a sample for the same second is moved to
+            // the next second instead
+            long time = Math.max(timestamp, lastUpdate + 1);
+            // counter values must be adjusted by stepsize
+            double storedValue = dsType == DsType.COUNTER ? value * step : value;
+
+            Sample sample = db.createSample();
+            sample.setTime(time);
+            sample.setValue(DATASOURCE_STATE, storedValue);
+            sample.update();
+            logger.debug("Stored '{}' as value '{}' in rrd4j database", name, storedValue);
+        } catch (Exception e) {
+            logger.warn("Could not persist '{}' to rrd4j database: {}", name, e.getMessage());
         }
     }
 
@@ -232,12 +324,6 @@ public class RRD4jPersistenceService implements QueryablePersistenceService {
     public Iterable<HistoricItem> query(FilterCriteria filter) {
         String itemName = filter.getItemName();
 
-        RrdDb db = getDB(itemName);
-        if (db == null) {
-            logger.debug("Could not find item '{}' in rrd4j database", itemName);
-            return List.of();
-        }
-
         Item item = null;
         Unit<?> unit = null;
         try {
@@ -251,6 +337,33 @@ public class RRD4jPersistenceService implements QueryablePersistenceService {
             logger.debug("Could not find item '{}' in registry", itemName);
         }
 
+        RRD4jDbPool.Handle handle;
+        try {
+            handle = dbPool.acquire(itemName);
+        } catch (IOException e) {
+            logger.warn("Could not open rrd4j database for item '{}': {}", itemName, e.getMessage());
+            return List.of();
+        }
+        try {
+            RrdDb db = handle.getDb();
+            if (db == null) {
+                logger.debug("Could not find item '{}' in rrd4j database", itemName);
+                return List.of();
+            }
+            RRD4jSampleBuffer buffer = sampleBuffers.get(itemName);
+            if (buffer != null && !buffer.isEmpty()) {
+                // make sure the result contains all values stored so far
+                flushPendingSamples(db, itemName, buffer);
+            }
+            return query(db, filter, item, unit);
+        } finally {
+            dbPool.release(handle);
+        }
+    }
+
+    private Iterable<HistoricItem> query(RrdDb db, FilterCriteria filter, @Nullable Item item,
+            @Nullable Unit<?> unit) {
+        String itemName = filter.getItemName();
         long start = 0L;
         long end = filter.getEndDate() == null ? System.currentTimeMillis() / 1000
                 : filter.getEndDate().toInstant().getEpochSecond();
@@ -313,13 +426,15 @@ public class RRD4jPersistenceService implements QueryablePersistenceService {
         return Set.of();
     }
 
-    protected synchronized @Nullable RrdDb getDB(String alias) {
+    protected @Nullable RrdDb getDB(String alias) {
         RrdDb db = null;
+        RrdBackendFactory backendFactory = this.backendFactory;
         File file = new File(DB_FOLDER + File.separator + alias + ".rrd");
         try {
             if (file.exists()) {
                 // recreate the RrdDb instance from the file
-                db = new RrdDb(file.getAbsolutePath());
+                db = backendFactory == null ? new RrdDb(file.getAbsolutePath())
+                        : new RrdDb(file.getAbsolutePath(), backendFactory);
             } else {
                 File folder = new File(DB_FOLDER);
                 if (!folder.exists()) {
@@ -328,7 +443,7 @@ public class RRD4jPersistenceService implements QueryablePersistenceService {
                 RrdDef rrdDef = getRrdDef(alias, file);
                 if (rrdDef != null) {
                     // create a new database file
-                    db = new RrdDb(rrdDef);
+                    db = backendFactory == null ? new RrdDb(rrdDef) : new RrdDb(rrdDef, backendFactory);
                 } else {
                     logger.debug(
                             "Did not create rrd4j database for item '{}' since no rrd definition could be determined. This is likely due to an unsupported item type.",
@@ -441,6 +556,29 @@ public class RRD4jPersistenceService implements QueryablePersistenceService {
     @Activate
     protected void activate(final Map<String, Object> config) {
         modified(config);
+        flushJob = scheduler.scheduleWithFixedDelay(this::flushPendingSamples, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @Deactivate
+    protected void deactivate() {
+        ScheduledFuture<?> flushJob = this.flushJob;
+        if (flushJob != null) {
+            flushJob.cancel(false);
+            this.flushJob = null;
+        }
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // write everything that is still pending
+        sampleBuffers.keySet().forEach(this::flushPendingSamples);
+        RrdBackendFactory oldBackendFactory = backendFactory;
+        backendFactory = null;
+        backendConfig = "";
+        dbPool.closeAll(() -> closeBackend(oldBackendFactory));
     }
 
     @Modified
@@ -448,6 +586,9 @@ public class RRD4jPersistenceService implements QueryablePersistenceService {
         // clean existing definitions
         rrdDefs.clear();
 
+        modifyBackend(config);
+        dbPool.setCapacity(getIntConfig(config, CONFIG_POOL_SIZE, RRD4jDbPool.DEFAULT_CAPACITY));
+
         // add default configurations
 
         RrdDefConfig defaultNumeric = new RrdDefConfig(DEFAULT_NUMERIC);
@@ -496,8 +637,8 @@ public class RRD4jPersistenceService implements QueryablePersistenceService {
         while (keys.hasNext()) {
             String key = keys.next();
 
-            if (key.equals("service.pid") || key.equals("component.name")) {
-                // ignore service.pid and name
+            if (SERVICE_CONFIG_KEYS.contains(key)) {
+                // ignore service.pid and name, service settings are handled separately
                 continue;
             }
 
@@ -554,6 +695,63 @@ public class RRD4jPersistenceService implements QueryablePersistenceService {
         }
     }
 
+    private void modifyBackend(final Map<String, Object> config) {
+        Object backend = config.get(CONFIG_BACKEND);
+        String backendName = backend == null ? "" : backend.toString().trim().toLowerCase();
+        int syncInterval = getIntConfig(config, CONFIG_SYNC_INTERVAL, DEFAULT_SYNC_INTERVAL);
+        String newBackendConfig = backendName + "," + syncInterval;
+        if (newBackendConfig.equals(backendConfig)) {
+            return;
+        }
+
+        RrdBackendFactory newBackendFactory;
+        switch (backendName) {
+            case "":
+                newBackendFactory = null;
+                break;
+            case BACKEND_FILE:
+                newBackendFactory = new RrdRandomAccessFileBackendFactory();
+                break;
+            case BACKEND_NIO:
+                newBackendFactory = new RrdNioBackendFactory(syncInterval);
+                break;
+            default:
+                logger.warn("Unknown backend '{}', using the default backend", backendName);
+                newBackendFactory = null;
+        }
+
+        // databases that are already open still use the old backend, so they have to be closed. Databases that are in
+        // use are closed when they are released, the old backend stays open until then.
+        sampleBuffers.keySet().forEach(this::flushPendingSamples);
+        RrdBackendFactory oldBackendFactory = backendFactory;
+        backendFactory = newBackendFactory;
+        backendConfig = newBackendConfig;
+        dbPool.closeAll(() -> closeBackend(oldBackendFactory));
+        logger.debug("Using backend '{}' for rrd4j databases", backendName.isEmpty() ? "default" : backendName);
+    }
+
+    private void closeBackend(@Nullable RrdBackendFactory backendFactory) {
+        if (backendFactory instanceof Closeable) {
+            try {
+                ((Closeable) backendFactory).close();
+            } catch (IOException e) {
+                logger.debug("Error closing rrd4j backend: {}", e.getMessage());
+            }
+        }
+    }
+
+    private int getIntConfig(final Map<String, Object> config, String key, int defaultValue) {
+        Object value = config.get(key);
+        if (value != null) {
+            try {
+                return Integer.parseInt(value.toString().trim());
+            } catch (NumberFormatException e) {
+                logger.warn("Ignoring illegal configuration {}: {}", key, e.getMessage());
+            }
+        }
+        return defaultValue;
+    }
+
     private class RrdArchiveDef {
         public @Nullable ConsolFun fcn;
         public double xff;
@@ -0,0 +1,132 @@
+/**
+ * Copyright (c) 2010-2021 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.persistence.rrd4j.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+
+/**
+ * The {@link RRD4jSampleBuffer} is a ring buffer holding the samples of a single item that have not yet been written
+ * to the database.
+ *
+ * Samples that fall into the same step of the database are collapsed into one sample: the last value is kept, or the
+ * average of all values if the database uses an AVERAGE archive. If the buffer is full, the oldest sample is dropped.
+ *
+ * @author craigham - Initial contribution
+ */
+@NonNullByDefault
+public class RRD4jSampleBuffer {
+
+    private static final int CAPACITY = 64;
+
+    /**
+     * A sample waiting to be written
+     */
+    public static class PendingSample {
+        public final long timestamp;
+        public final double value;
+
+        private PendingSample(long timestamp, double value) {
+            this.timestamp = timestamp;
+            this.value = value;
+        }
+    }
+
+    private final long[] timestamps = new long[CAPACITY];
+    private final double[] sums = new double[CAPACITY];
+    private final int[] counts = new int[CAPACITY];
+    private int head = 0;
+    private int size = 0;
+    private int dropped = 0;
+
+    private long step = 1;
+    private boolean average = false;
+
+    /**
+     * Set the step size and consolidation of the underlying database, so that samples can be collapsed correctly.
+     * Before this is called, samples are collapsed per second.
+     *
+     * @param step the step size in seconds
+     * @param average <code>true</code> if values in the same step shall be averaged
+     */
+    public synchronized void configure(long step, boolean average) {
+        this.step = Math.max(1, step);
+        this.average = average;
+    }
+
+    /**
+     * Add a sample to the buffer
+     *
+     * @param timestamp the timestamp in seconds
+     * @param value the value
+     */
+    public synchronized void add(long timestamp, double value) {
+        if (size > 0) {
+            int last = (head + size - 1) % CAPACITY;
+            if (timestamp / step == timestamps[last] / step) {
+                timestamps[last] = Math.max(timestamp, timestamps[last]);
+                if (average) {
+                    sums[last] += value;
+                    counts[last]++;
+                } else {
+                    sums[last] = value;
+                    counts[last] = 1;
+                }
+                return;
+            }
+        }
+        if (size == CAPACITY) {
+            head = (head + 1) % CAPACITY;
+            size--;
+            dropped++;
+        }
+        int slot = (head + size) % CAPACITY;
+        timestamps[slot] = timestamp;
+        sums[slot] = value;
+        counts[slot] = 1;
+        size++;
+    }
+
+    public synchronized boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Remove all samples from the buffer
+     *
+     * @return the samples in chronological order
+     */
+    public synchronized List<PendingSample> drain() {
+        List<PendingSample> samples = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            int slot = (head + i) % CAPACITY;
+            samples.add(new PendingSample(timestamps[slot], sums[slot] / counts[slot]));
+        }
+        head = 0;
+        size = 0;
+        return samples;
+    }
+
+    /**
+     * Get and reset the number of samples that were dropped because the buffer was full
+     *
+     * @return the number of dropped samples
+     */
+    public synchronized int getAndResetDropped() {
+        int result = dropped;
+        dropped = 0;
+        return result;
+    }
+}
@@ -0,0 +1,131 @@
+/**
+ * Copyright (c) 2010-2021 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.persistence.rrd4j.internal.charts;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+/**
+ * This class caches rendered charts. The cache is bounded by the (estimated) number of bytes of the cached images,
+ * the least recently used charts are evicted first.
+ *
+ * @author craigham - Initial contribution
+ */
+public class RRD4jChartCache {
+
+    /**
+     * A rendered chart together with the information needed to decide if it is still up to date
+     */
+    public static class CachedChart {
+        private final BufferedImage image;
+        private final List<String> itemNames;
+        private final long lastUpdateTime;
+        private final long expiresAt;
+        private final String eTag;
+        private byte[] png;
+
+        public CachedChart(BufferedImage image, List<String> itemNames, long lastUpdateTime, long expiresAt) {
+            this.image = image;
+            this.itemNames = itemNames;
+            this.lastUpdateTime = lastUpdateTime;
+            this.expiresAt = expiresAt;
+            this.eTag = "\"" + Integer.toHexString(System.identityHashCode(this)) + "-"
+                    + Long.toHexString(System.currentTimeMillis()) + "\"";
+        }
+
+        public BufferedImage getImage() {
+            return image;
+        }
+
+        /**
+         * @return the names of all items shown in this chart
+         */
+        public List<String> getItemNames() {
+            return itemNames;
+        }
+
+        public String getETag() {
+            return eTag;
+        }
+
+        /**
+         * Check if the chart is still up to date
+         *
+         * @param now the current time in milliseconds
+         * @param lastUpdateTime the most recent update time (in milliseconds) of all items shown in this chart
+         * @return true if the chart does not need to be rendered again
+         */
+        public boolean isValid(long now, long lastUpdateTime) {
+            return now < expiresAt && lastUpdateTime <= this.lastUpdateTime;
+        }
+
+        /**
+         * @return the chart encoded as PNG image
+         * @throws IOException if the image could not be encoded
+         */
+        public synchronized byte[] getPng() throws IOException {
+            byte[] png = this.png;
+            if (png == null) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                ImageIO.write(image, "png", out);
+                png = out.toByteArray();
+                this.png = png;
+            }
+            return png;
+        }
+
+        private long getSize() {
+            // 4 bytes per pixel for the image plus a rough estimate for the PNG
+            return 5L * image.getWidth() * image.getHeight();
+        }
+    }
+
+    private final Map<String, CachedChart> charts = new LinkedHashMap<>(16, 0.75f, true);
+    private final long maxSize;
+    private long size = 0;
+
+    public RRD4jChartCache(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public synchronized CachedChart get(String key) {
+        return charts.get(key);
+    }
+
+    public synchronized void put(String key, CachedChart chart) {
+        CachedChart old = charts.put(key, chart);
+        if (old != null) {
+            size -= old.getSize();
+        }
+        size += chart.getSize();
+
+        Iterator<CachedChart> iterator = charts.values().iterator();
+        while (size > maxSize && iterator.hasNext()) {
+            CachedChart evicted = iterator.next();
+            iterator.remove();
+            size -= evicted.getSize();
+        }
+    }
+
+    public synchronized void clear() {
+        charts.clear();
+        size = 0;
+    }
+}
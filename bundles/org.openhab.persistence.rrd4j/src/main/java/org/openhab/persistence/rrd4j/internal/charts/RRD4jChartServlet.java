@@ -17,18 +17,21 @@ import java.awt.Font;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 
-import javax.imageio.ImageIO;
 import javax.servlet.Servlet;
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
 import org.openhab.core.items.GroupItem;
 import org.openhab.core.items.Item;
@@ -37,6 +40,7 @@ import org.openhab.core.library.items.NumberItem;
 import org.openhab.core.ui.chart.ChartProvider;
 import org.openhab.core.ui.items.ItemUIRegistry;
 import org.openhab.persistence.rrd4j.internal.RRD4jPersistenceService;
+import org.openhab.persistence.rrd4j.internal.charts.RRD4jChartCache.CachedChart;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Deactivate;
@@ -98,12 +102,20 @@ public class RRD4jChartServlet implements Servlet, ChartProvider {
         PERIODS.put("Y", -31536000000L);
     }
 
+    /** the maximum size of all cached charts in bytes */
+    private static final long CHART_CACHE_SIZE = 16 * 1024 * 1024;
+
+    private final RRD4jChartCache chartCache = new RRD4jChartCache(CHART_CACHE_SIZE);
+
     @Reference
     protected HttpService httpService;
 
     @Reference
     protected ItemUIRegistry itemUIRegistry;
 
+    @Reference
+    protected RRD4jPersistenceService persistenceService;
+
     @Activate
     protected void activate() {
         try {
@@ -119,6 +131,7 @@ public class RRD4jChartServlet implements Servlet, ChartProvider {
     @Deactivate
     protected void deactivate() {
         httpService.unregister(SERVLET_NAME);
+        chartCache.clear();
     }
 
     @Override
@@ -147,9 +160,20 @@ public class RRD4jChartServlet implements Servlet, ChartProvider {
         // Set the content type to that provided by the chart provider
         res.setContentType("image/" + getChartType());
         try {
-            BufferedImage chart = createChart(null, null, timeBegin, timeEnd, height, width, req.getParameter("items"),
+            CachedChart chart = getChart(null, timeBegin, timeEnd, height, width, req.getParameter("items"),
                     req.getParameter("groups"), null, null);
-            ImageIO.write(chart, getChartType().toString(), res.getOutputStream());
+            if (chart == null) {
+                return;
+            }
+            if (req instanceof HttpServletRequest && res instanceof HttpServletResponse) {
+                HttpServletResponse httpResponse = (HttpServletResponse) res;
+                httpResponse.setHeader("ETag", chart.getETag());
+                if (chart.getETag().equals(((HttpServletRequest) req).getHeader("If-None-Match"))) {
+                    httpResponse.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                    return;
+                }
+            }
+            res.getOutputStream().write(chart.getPng());
         } catch (ItemNotFoundException e) {
             logger.debug("Item not found error while generating chart.");
         } catch (IllegalArgumentException e) {
@@ -169,7 +193,7 @@ public class RRD4jChartServlet implements Servlet, ChartProvider {
     protected void addLine(RrdGraphDef graphDef, Item item, int counter) {
         Color color = LINECOLORS[counter % LINECOLORS.length];
         String label = itemUIRegistry.getLabel(item.getName());
-        String rrdName = RRD4jPersistenceService.DB_FOLDER + File.separator + item.getName() + ".rrd";
+        String rrdName = getRrdName(item);
         ConsolFun consolFun;
         if (label != null && label.contains("[") && label.contains("]")) {
             label = label.substring(0, label.indexOf('['));
@@ -195,6 +219,10 @@ public class RRD4jChartServlet implements Servlet, ChartProvider {
         }
     }
 
+    private String getRrdName(Item item) {
+        return RRD4jPersistenceService.DB_FOLDER + File.separator + item.getName() + ".rrd";
+    }
+
     @Override
     public void init(ServletConfig config) throws ServletException {
     }
@@ -224,9 +252,47 @@ public class RRD4jChartServlet implements Servlet, ChartProvider {
     @Override
     public BufferedImage createChart(String service, String theme, Date startTime, Date endTime, int height, int width,
             String items, String groups, Integer dpi, Boolean legend) throws ItemNotFoundException {
-        RrdGraphDef graphDef = new RrdGraphDef();
+        CachedChart chart = getChart(theme, startTime, endTime, height, width, items, groups, dpi, legend);
+        return chart == null ? null : chart.getImage();
+    }
 
+    /**
+     * Returns the chart from the cache if none of its databases has been updated since it was rendered, otherwise the
+     * chart is rendered and put into the cache.
+     */
+    private CachedChart getChart(String theme, Date startTime, Date endTime, int height, int width, String items,
+            String groups, Integer dpi, Boolean legend) throws ItemNotFoundException {
         long period = (startTime.getTime() - endTime.getTime()) / 1000;
+        String key = String.join("|", String.valueOf(items), String.valueOf(groups), Long.toString(period),
+                Integer.toString(width), Integer.toString(height), String.valueOf(theme), String.valueOf(dpi),
+                String.valueOf(legend));
+
+        CachedChart chart = chartCache.get(key);
+        if (chart != null && chart.isValid(System.currentTimeMillis(), getLastUpdateTime(chart.getItemNames()))) {
+            logger.trace("Using cached chart for {}", key);
+            return chart;
+        }
+
+        chart = renderChart(period, height, width, items, groups);
+        if (chart != null) {
+            chartCache.put(key, chart);
+        }
+        return chart;
+    }
+
+    private long getLastUpdateTime(List<String> itemNames) {
+        // the service knows when it has written samples, so the databases do not need to be opened
+        long lastUpdateTime = 0;
+        for (String itemName : itemNames) {
+            lastUpdateTime = Math.max(lastUpdateTime, persistenceService.getLastUpdateTime(itemName));
+        }
+        return lastUpdateTime;
+    }
+
+    private CachedChart renderChart(long period, int height, int width, String items, String groups)
+            throws ItemNotFoundException {
+        RrdGraphDef graphDef = new RrdGraphDef();
+        List<String> chartItemNames = new ArrayList<>();
 
         graphDef.setWidth(width);
         graphDef.setHeight(height);
@@ -245,6 +311,7 @@ public class RRD4jChartServlet implements Servlet, ChartProvider {
             for (String itemName : itemNames) {
                 Item item = itemUIRegistry.getItem(itemName);
                 addLine(graphDef, item, seriesCounter++);
+                chartItemNames.add(item.getName());
             }
         }
 
@@ -257,6 +324,7 @@ public class RRD4jChartServlet implements Servlet, ChartProvider {
                     GroupItem groupItem = (GroupItem) item;
                     for (Item member : groupItem.getMembers()) {
                         addLine(graphDef, member, seriesCounter++);
+                        chartItemNames.add(member.getName());
                     }
                 } else {
                     throw new ItemNotFoundException("Item '" + item.getName() + "' defined in groups is not a group.");
@@ -264,6 +332,12 @@ public class RRD4jChartServlet implements Servlet, ChartProvider {
             }
         }
 
+        // determine the update time before the data is read, so a concurrent update invalidates the chart
+        long lastUpdateTime = getLastUpdateTime(chartItemNames);
+        // the chart moves by one pixel every period / width, so it can only be reused until then
+        long maxAge = Math.max(1000L, -period * 1000 / Math.max(1, width));
+        long expiresAt = System.currentTimeMillis() + maxAge;
+
         // Write the chart as a PNG image
         RrdGraph graph;
         try {
@@ -272,7 +346,7 @@ public class RRD4jChartServlet implements Servlet, ChartProvider {
                     graph.getRrdGraphInfo().getHeight(), BufferedImage.TYPE_INT_RGB);
             graph.render(bi.getGraphics());
 
-            return bi;
+            return new CachedChart(bi, chartItemNames, lastUpdateTime, expiresAt);
         } catch (IOException e) {
             logger.error("Error generating graph.", e);
         }
@@ -73,6 +73,14 @@ public class Bin2Json {
 
     private final Logger logger = LoggerFactory.getLogger(Bin2Json.class);
 
+    private static final int INITIAL_BUFFER_CAPACITY = 256;
+    private static final int MAX_BUFFER_CAPACITY = 64 * 1024;
+    private static final String NO_NAME = "nonamed";
+
+    // reused by convertToString
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal
+            .withInitial(() -> new StringBuilder(INITIAL_BUFFER_CAPACITY));
+
     private JBBPParser parser;
 
     /**
@@ -137,6 +145,45 @@ public class Bin2Json {
         }
     }
 
+    /**
+     * Convert {@link String} in hexadecimal string format to JSON text. Gives the same result as
+     * <code>convert(hexString).toString()</code>, but writes the fields directly without building a Gson tree.
+     *
+     * @param hexString Data in hexadecimal string format. Example data: 03FAFF
+     * @return JSON text
+     * @throws ConversionException
+     */
+    public String convertToString(String hexString) throws ConversionException {
+        final byte[] data;
+        try {
+            data = HexUtils.hexToBytes(hexString);
+        } catch (IllegalArgumentException e) {
+            throw new ConversionException(String.format("Illegal hexstring , reason: %s", e.getMessage(), e));
+        }
+        final JBBPFieldStruct struct;
+        try {
+            struct = parser.parse(data);
+        } catch (IOException e) {
+            throw new ConversionException(String.format("Unexpected error, reason: %s", e.getMessage(), e));
+        } catch (JBBPException e) {
+            throw new ConversionException(String.format("Unexpected error, reason: %s", e.getMessage(), e));
+        }
+        StringBuilder buffer = BUFFER.get();
+        if (buffer.capacity() > MAX_BUFFER_CAPACITY) {
+            buffer = new StringBuilder(INITIAL_BUFFER_CAPACITY);
+            BUFFER.set(buffer);
+        }
+        buffer.setLength(0);
+        try {
+            writeFields(buffer, struct);
+        } catch (JBBPException e) {
+            throw new ConversionException(String.format("Unexpected error, reason: %s", e.getMessage(), e));
+        }
+        final String json = buffer.toString();
+        logger.trace("json={}", json);
+        return json;
+    }
+
     private JsonObject convert(JBBPFieldStruct data) throws ConversionException {
         try {
             LocalDateTime start = LocalDateTime.now();
@@ -236,4 +283,171 @@ public class Bin2Json {
         }
         return jsn;
     }
+
+    /**
+     * Writes the fields of a struct as a JSON object, like {@link #convertToJSon(JBBPAbstractField)} builds it.
+     */
+    private void writeFields(final StringBuilder out, final JBBPFieldStruct struct) throws ConversionException {
+        final JBBPAbstractField[] fields = struct.getArray();
+        // unnamed fields share one name, like in a JsonObject the last value is kept at the first position
+        int firstNoName = -1;
+        int lastNoName = -1;
+        for (int i = 0; i < fields.length; i++) {
+            if (NO_NAME.equals(getFieldName(fields[i]))) {
+                if (firstNoName < 0) {
+                    firstNoName = i;
+                }
+                lastNoName = i;
+            }
+        }
+        out.append('{');
+        boolean first = true;
+        for (int i = 0; i < fields.length; i++) {
+            final JBBPAbstractField field;
+            if (i == firstNoName) {
+                field = fields[lastNoName];
+            } else if (firstNoName >= 0 && NO_NAME.equals(getFieldName(fields[i]))) {
+                continue;
+            } else {
+                field = fields[i];
+            }
+            if (!first) {
+                out.append(',');
+            }
+            first = false;
+            writeField(out, field);
+        }
+        out.append('}');
+    }
+
+    /**
+     * Writes a field as a name/value pair.
+     */
+    private void writeField(final StringBuilder out, final JBBPAbstractField field) throws ConversionException {
+        writeString(out, getFieldName(field));
+        out.append(':');
+        if (field instanceof JBBPAbstractArrayField) {
+            out.append('[');
+            if (field instanceof JBBPFieldArrayBit) {
+                final byte[] array = ((JBBPFieldArrayBit) field).getArray();
+                for (int i = 0; i < array.length; i++) {
+                    appendSeparator(out, i).append(array[i]);
+                }
+            } else if (field instanceof JBBPFieldArrayBoolean) {
+                final boolean[] array = ((JBBPFieldArrayBoolean) field).getArray();
+                for (int i = 0; i < array.length; i++) {
+                    appendSeparator(out, i).append(array[i]);
+                }
+            } else if (field instanceof JBBPFieldArrayByte) {
+                final byte[] array = ((JBBPFieldArrayByte) field).getArray();
+                for (int i = 0; i < array.length; i++) {
+                    appendSeparator(out, i).append(array[i]);
+                }
+            } else if (field instanceof JBBPFieldArrayInt) {
+                final int[] array = ((JBBPFieldArrayInt) field).getArray();
+                for (int i = 0; i < array.length; i++) {
+                    appendSeparator(out, i).append(array[i]);
+                }
+            } else if (field instanceof JBBPFieldArrayLong) {
+                final long[] array = ((JBBPFieldArrayLong) field).getArray();
+                for (int i = 0; i < array.length; i++) {
+                    appendSeparator(out, i).append(array[i]);
+                }
+            } else if (field instanceof JBBPFieldArrayShort) {
+                final short[] array = ((JBBPFieldArrayShort) field).getArray();
+                for (int i = 0; i < array.length; i++) {
+                    appendSeparator(out, i).append(array[i]);
+                }
+            } else if (field instanceof JBBPFieldArrayStruct) {
+                // every element is wrapped in an object with its name, like convertToJSon does
+                final JBBPFieldArrayStruct array = (JBBPFieldArrayStruct) field;
+                for (int i = 0; i < array.size(); i++) {
+                    appendSeparator(out, i).append('{');
+                    writeField(out, array.getElementAt(i));
+                    out.append('}');
+                }
+            } else if (field instanceof JBBPFieldArrayUByte) {
+                final byte[] array = ((JBBPFieldArrayUByte) field).getArray();
+                for (int i = 0; i < array.length; i++) {
+                    appendSeparator(out, i).append(array[i] & 0xFF);
+                }
+            } else if (field instanceof JBBPFieldArrayUShort) {
+                final short[] array = ((JBBPFieldArrayUShort) field).getArray();
+                for (int i = 0; i < array.length; i++) {
+                    appendSeparator(out, i).append(array[i] & 0xFFFF);
+                }
+            } else {
+                throw new ConversionException(String.format("Unexpected field type '%s'", field));
+            }
+            out.append(']');
+        } else {
+            if (field instanceof JBBPFieldBit) {
+                out.append(((JBBPFieldBit) field).getAsInt());
+            } else if (field instanceof JBBPFieldBoolean) {
+                out.append(((JBBPFieldBoolean) field).getAsBool());
+            } else if (field instanceof JBBPFieldByte) {
+                out.append(((JBBPFieldByte) field).getAsInt());
+            } else if (field instanceof JBBPFieldInt) {
+                out.append(((JBBPFieldInt) field).getAsInt());
+            } else if (field instanceof JBBPFieldLong) {
+                out.append(((JBBPFieldLong) field).getAsLong());
+            } else if (field instanceof JBBPFieldShort) {
+                out.append(((JBBPFieldShort) field).getAsInt());
+            } else if (field instanceof JBBPFieldStruct) {
+                writeFields(out, (JBBPFieldStruct) field);
+            } else if (field instanceof JBBPFieldUByte) {
+                out.append(((JBBPFieldUByte) field).getAsInt());
+            } else if (field instanceof JBBPFieldUShort) {
+                out.append(((JBBPFieldUShort) field).getAsInt());
+            } else {
+                throw new ConversionException(String.format("Unexpected field '%s'", field));
+            }
+        }
+    }
+
+    private static String getFieldName(final JBBPAbstractField field) {
+        return field.getFieldName() == null ? NO_NAME : field.getFieldName();
+    }
+
+    private static StringBuilder appendSeparator(final StringBuilder out, final int index) {
+        return index == 0 ? out : out.append(',');
+    }
+
+    /**
+     * Writes a quoted string, escaped like Gson does. Field names are identifiers, so this is only a safeguard.
+     */
+    private static void writeString(final StringBuilder out, final String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                case '\\':
+                    out.append('\\').append(c);
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                case '\b':
+                    out.append("\\b");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\f':
+                    out.append("\\f");
+                    break;
+                default:
+                    if (c < 0x20 || c == 0x2028 || c == 0x2029) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        out.append('"');
+    }
 }
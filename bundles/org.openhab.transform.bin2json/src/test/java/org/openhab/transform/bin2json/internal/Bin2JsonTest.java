@@ -0,0 +1,77 @@
+/**
+ * Copyright (c) 2010-2021 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.transform.bin2json.internal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.stream.Stream;
+
+import org.eclipse.jdt.annotation.DefaultLocation;
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+/**
+ * Tests that {@link Bin2Json#convertToString(String)} writes the same JSON as the Gson tree built by
+ * {@link Bin2Json#convert(String)}.
+ *
+ * @author craigham - Initial contribution
+ */
+@SuppressWarnings("null")
+@NonNullByDefault(value = { DefaultLocation.PARAMETER, DefaultLocation.RETURN_TYPE })
+public class Bin2JsonTest {
+
+    private static Stream<Arguments> grammars() {
+        return Stream.of( //
+                // scalars
+                Arguments.of("byte a; byte b; ubyte c;", "03FAFF"),
+                Arguments.of("bit:4 a; bit:4 b; bool c; short d; ushort e; int f; long g;",
+                        "A501FFFEFFFE80000001FFFFFFFFFFFFFFFE"),
+                // arrays
+                Arguments.of("byte [2] a; ubyte [2] b; short [2] c; ushort [1] d; int [1] e; long [1] f; bool [2] g;",
+                        "7F80FF0080007FFFFFFFFFFF0000000101020304050607080001"),
+                Arguments.of("bit:4 [2] a; bit:1 [8] b;", "5AA5"),
+                // nested structs
+                Arguments.of("byte a; s { ubyte b; t { short c; } } byte d;", "01FF800002"),
+                // struct arrays
+                Arguments.of("ubyte n; items [n] { ubyte id; ushort value; }", "020100FF02FFFF"),
+                Arguments.of("ubyte n; items [n] { ubyte id; ushort value; }", "00"),
+                // unnamed fields share one name
+                Arguments.of("byte; byte a; ubyte; byte;", "01020304"),
+                Arguments.of("byte a; s { byte; byte b; byte; } byte;", "0102030405"));
+    }
+
+    @ParameterizedTest
+    @MethodSource("grammars")
+    public void convertToStringMatchesConvert(String rule, String hex) throws ConversionException {
+        Bin2Json bin2Json = new Bin2Json(rule);
+
+        assertEquals(bin2Json.convert(hex).toString(), bin2Json.convertToString(hex));
+    }
+
+    @Test
+    public void convertToStringWritesReadmeExample() throws ConversionException {
+        Bin2Json bin2Json = new Bin2Json("byte a; byte b; ubyte c;");
+
+        assertEquals("{\"a\":3,\"b\":-6,\"c\":255}", bin2Json.convertToString("03FAFF"));
+    }
+
+    @Test
+    public void convertToStringRejectsIllegalHex() throws ConversionException {
+        Bin2Json bin2Json = new Bin2Json("byte a;");
+
+        assertThrows(ConversionException.class, () -> bin2Json.convertToString("0G"));
+    }
+}
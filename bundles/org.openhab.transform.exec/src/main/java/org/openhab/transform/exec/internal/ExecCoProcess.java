@@ -0,0 +1,271 @@
+/**
+ * Copyright (c) 2010-2021 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.transform.exec.internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.core.common.NamedThreadFactory;
+import org.openhab.core.transform.TransformationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A command that is started once and transforms values it reads from stdin, writing one response to stdout for every
+ * request, in the same order.
+ *
+ * Requests are written without waiting for the responses of earlier ones, so several threads can use the process at
+ * the same time. A process that exits is started again by the next request. A process that does not answer in time
+ * is stopped, so it is started again as well.
+ *
+ * @author craigham - Initial contribution
+ */
+@NonNullByDefault
+class ExecCoProcess {
+
+    /**
+     * How requests and responses are delimited.
+     */
+    enum Framing {
+        /** one line per message, the message must not contain a line break */
+        LINE,
+        /** the length of the message in bytes and a line break, followed by the message */
+        LENGTH
+    }
+
+    private static final long MIN_RESTART_INTERVAL_MS = 1000;
+    private static final ThreadFactory THREAD_FACTORY = new NamedThreadFactory("exec-coprocess");
+
+    private final Logger logger = LoggerFactory.getLogger(ExecCoProcess.class);
+
+    private final String commandLine;
+    private final Framing framing;
+
+    private final Object lock = new Object();
+    // guarded by lock
+    private @Nullable Process process;
+    private @Nullable OutputStream stdin;
+    private Queue<CompletableFuture<String>> pending = new ConcurrentLinkedQueue<>();
+    private long lastStart = 0;
+
+    ExecCoProcess(String commandLine, Framing framing) {
+        this.commandLine = commandLine;
+        this.framing = framing;
+    }
+
+    /**
+     * Sends a value to the process and waits for its response.
+     *
+     * @param input the value
+     * @param timeout the time to wait for the response
+     * @return the response
+     * @throws TransformationException if the process cannot be started, exits or does not answer in time
+     */
+    String call(String input, Duration timeout) throws TransformationException {
+        if (framing == Framing.LINE && (input.indexOf('\n') >= 0 || input.indexOf('\r') >= 0)) {
+            throw new TransformationException("Input for co-process '" + commandLine + "' contains a line break");
+        }
+        final CompletableFuture<String> response = new CompletableFuture<>();
+        final Process localProcess;
+        synchronized (lock) {
+            localProcess = getProcess();
+            OutputStream localStdin = stdin;
+            pending.add(response);
+            try {
+                if (localStdin == null) {
+                    throw new IOException("stdin is closed");
+                }
+                write(localStdin, input);
+            } catch (IOException e) {
+                stop(localProcess);
+                throw new TransformationException(
+                        "Cannot write to co-process '" + commandLine + "': " + e.getMessage(), e);
+            }
+        }
+        try {
+            return response.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            logger.warn("Co-process '{}' did not answer within {} ms, stopping it", commandLine, timeout.toMillis());
+            stop(localProcess);
+            throw new TransformationException("Co-process '" + commandLine + "' did not answer in time", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw new TransformationException(cause == null ? "Co-process failed" : cause.getMessage(), cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransformationException("Interrupted while waiting for co-process '" + commandLine + "'", e);
+        }
+    }
+
+    /**
+     * Stops the process. Requests that are still waiting for a response fail.
+     */
+    void stop() {
+        Process localProcess;
+        synchronized (lock) {
+            localProcess = process;
+        }
+        if (localProcess != null) {
+            stop(localProcess);
+        }
+    }
+
+    private void stop(Process stoppedProcess) {
+        synchronized (lock) {
+            if (process == stoppedProcess) {
+                process = null;
+                stdin = null;
+            }
+        }
+        // the reader sees the end of the stream and fails the pending requests
+        stoppedProcess.destroy();
+    }
+
+    private Process getProcess() throws TransformationException {
+        Process localProcess = process;
+        if (localProcess != null && localProcess.isAlive()) {
+            return localProcess;
+        }
+        long now = System.currentTimeMillis();
+        if (now - lastStart < MIN_RESTART_INTERVAL_MS) {
+            throw new TransformationException("Co-process '" + commandLine + "' exited, not restarting it yet");
+        }
+        lastStart = now;
+        logger.debug("Starting co-process '{}'", commandLine);
+        try {
+            localProcess = new ProcessBuilder(commandLine.split(" ")).start();
+        } catch (IOException e) {
+            throw new TransformationException("Cannot start co-process '" + commandLine + "': " + e.getMessage(), e);
+        }
+        final Process startedProcess = localProcess;
+        final Queue<CompletableFuture<String>> responses = new ConcurrentLinkedQueue<>();
+        process = startedProcess;
+        stdin = new BufferedOutputStream(startedProcess.getOutputStream());
+        pending = responses;
+        THREAD_FACTORY.newThread(() -> readResponses(startedProcess, responses)).start();
+        THREAD_FACTORY.newThread(() -> logErrors(startedProcess)).start();
+        return startedProcess;
+    }
+
+    private void write(OutputStream out, String input) throws IOException {
+        byte[] data = input.getBytes(StandardCharsets.UTF_8);
+        if (framing == Framing.LENGTH) {
+            out.write((data.length + "\n").getBytes(StandardCharsets.UTF_8));
+            out.write(data);
+        } else {
+            out.write(data);
+            out.write('\n');
+        }
+        out.flush();
+    }
+
+    private void readResponses(Process readProcess, Queue<CompletableFuture<String>> responses) {
+        try (InputStream in = new BufferedInputStream(readProcess.getInputStream())) {
+            String response;
+            while ((response = framing == Framing.LENGTH ? readFrame(in) : readLine(in)) != null) {
+                CompletableFuture<String> future = responses.poll();
+                if (future == null) {
+                    logger.debug("Ignoring unexpected output of co-process '{}': {}", commandLine, response);
+                } else {
+                    future.complete(response);
+                }
+            }
+        } catch (IOException e) {
+            logger.debug("Reading from co-process '{}' failed: {}", commandLine, e.getMessage());
+        }
+        // no new requests are queued for this process after it is detached
+        synchronized (lock) {
+            if (process == readProcess) {
+                process = null;
+                stdin = null;
+            }
+        }
+        readProcess.destroy();
+        logger.debug("Co-process '{}' exited", commandLine);
+        IOException exited = new IOException("Co-process '" + commandLine + "' exited");
+        CompletableFuture<String> future;
+        while ((future = responses.poll()) != null) {
+            future.completeExceptionally(exited);
+        }
+    }
+
+    private void logErrors(Process readProcess) {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(readProcess.getErrorStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                logger.debug("Co-process '{}': {}", commandLine, line);
+            }
+        } catch (IOException e) {
+            // the process has exited
+        }
+    }
+
+    /**
+     * @return the line without the line break, or <code>null</code> at the end of the stream
+     */
+    private static @Nullable String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b < 0) {
+                return null;
+            }
+            line.write(b);
+        }
+        byte[] data = line.toByteArray();
+        int length = data.length > 0 && data[data.length - 1] == '\r' ? data.length - 1 : data.length;
+        return new String(data, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the message, or <code>null</code> at the end of the stream
+     */
+    private static @Nullable String readFrame(InputStream in) throws IOException {
+        String header = readLine(in);
+        if (header == null) {
+            return null;
+        }
+        final int length;
+        try {
+            length = Integer.parseInt(header.trim());
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid length '" + header + "'");
+        }
+        if (length < 0) {
+            throw new IOException("Invalid length '" + header + "'");
+        }
+        byte[] data = in.readNBytes(length);
+        if (data.length < length) {
+            return null;
+        }
+        return new String(data, StandardCharsets.UTF_8);
+    }
+}
@@ -13,6 +13,8 @@
 package org.openhab.transform.exec.internal;
 
 import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.eclipse.jdt.annotation.Nullable;
@@ -21,6 +23,7 @@ import org.openhab.core.transform.TransformationException;
 import org.openhab.core.transform.TransformationService;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
 import org.osgi.service.component.annotations.Reference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,11 +34,17 @@ import org.slf4j.LoggerFactory;
  *
  * @author Pauli Anttila - Initial contribution
  * @author Jan N. Klug - added command whitelist service
+ * @author craigham - added co-process mode
  */
 @NonNullByDefault
 @Component(property = { "openhab.transform=EXEC" })
 public class ExecTransformationService implements TransformationService {
+    private static final String COPROCESS_PREFIX = "coprocess:";
+    private static final String COPROCESS_LENGTH_PREFIX = "coprocess-length:";
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
     private final Logger logger = LoggerFactory.getLogger(ExecTransformationService.class);
+    private final Map<String, ExecCoProcess> coProcesses = new ConcurrentHashMap<>();
     private final ExecTransformationWhitelistWatchService execTransformationWhitelistWatchService;
 
     @Activate
@@ -44,11 +53,18 @@ public class ExecTransformationService implements TransformationService {
         this.execTransformationWhitelistWatchService = execTransformationWhitelistWatchService;
     }
 
+    @Deactivate
+    public void deactivate() {
+        coProcesses.values().forEach(ExecCoProcess::stop);
+        coProcesses.clear();
+    }
+
     /**
      * Transforms the input <code>source</code> by the command line.
      *
      * @param commandLine the command to execute. Command line should contain %s string, which will be replaced by the
-     *            input data.
+     *            input data. With the prefix <code>coprocess:</code> or <code>coprocess-length:</code> the command is
+     *            started once and the input data is written to its stdin.
      * @param source the input to transform
      */
     @Override
@@ -57,6 +73,14 @@ public class ExecTransformationService implements TransformationService {
             throw new TransformationException("the given parameters 'commandLine' and 'source' must not be null");
         }
 
+        if (commandLine.startsWith(COPROCESS_PREFIX)) {
+            return transformByCoProcess(commandLine, commandLine.substring(COPROCESS_PREFIX.length()),
+                    ExecCoProcess.Framing.LINE, source);
+        } else if (commandLine.startsWith(COPROCESS_LENGTH_PREFIX)) {
+            return transformByCoProcess(commandLine, commandLine.substring(COPROCESS_LENGTH_PREFIX.length()),
+                    ExecCoProcess.Framing.LENGTH, source);
+        }
+
         if (!execTransformationWhitelistWatchService.isWhitelisted(commandLine)) {
             logger.warn("Tried to execute '{}', but it is not contained in whitelist.", commandLine);
             return null;
@@ -72,4 +96,30 @@ public class ExecTransformationService implements TransformationService {
 
         return result;
     }
+
+    private @Nullable String transformByCoProcess(String function, String commandLine, ExecCoProcess.Framing framing,
+            String source) throws TransformationException {
+        if (commandLine.contains("%s")) {
+            // the source is written to stdin, it is never put into the command line
+            throw new TransformationException(
+                    "Co-process command '" + commandLine + "' must not contain %s, the input is written to its stdin");
+        }
+        if (!execTransformationWhitelistWatchService.isWhitelisted(commandLine)) {
+            logger.warn("Tried to execute '{}', but it is not contained in whitelist.", commandLine);
+            ExecCoProcess coProcess = coProcesses.remove(function);
+            if (coProcess != null) {
+                coProcess.stop();
+            }
+            return null;
+        }
+        logger.debug("about to transform '{}' by the co-process '{}'", source, commandLine);
+
+        long startTime = System.currentTimeMillis();
+
+        String result = coProcesses.computeIfAbsent(function, f -> new ExecCoProcess(commandLine, framing))
+                .call(source, TIMEOUT);
+        logger.trace("co-process execution elapsed {} ms", System.currentTimeMillis() - startTime);
+
+        return result;
+    }
 }
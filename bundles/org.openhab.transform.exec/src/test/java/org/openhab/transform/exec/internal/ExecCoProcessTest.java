@@ -0,0 +1,124 @@
+/**
+ * Copyright (c) 2010-2021 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.transform.exec.internal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.jdt.annotation.DefaultLocation;
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.openhab.core.transform.TransformationException;
+
+/**
+ * Tests {@link ExecCoProcess} with <code>cat</code>, which answers every request with the request itself.
+ *
+ * @author craigham - Initial contribution
+ */
+@SuppressWarnings("null")
+@NonNullByDefault(value = { DefaultLocation.PARAMETER, DefaultLocation.RETURN_TYPE })
+@DisabledOnOs(OS.WINDOWS)
+public class ExecCoProcessTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+    // a stopped process is started again at most once per second
+    private static final long RESTART_WAIT_MS = 1100;
+
+    private final List<ExecCoProcess> coProcesses = new ArrayList<>();
+
+    private ExecCoProcess createCoProcess(ExecCoProcess.Framing framing) {
+        ExecCoProcess coProcess = new ExecCoProcess("cat", framing);
+        coProcesses.add(coProcess);
+        return coProcess;
+    }
+
+    @AfterEach
+    public void tearDown() {
+        coProcesses.forEach(ExecCoProcess::stop);
+    }
+
+    @Test
+    public void pipelinedRequestsAreAnsweredInOrder() throws Exception {
+        ExecCoProcess coProcess = createCoProcess(ExecCoProcess.Framing.LINE);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Callable<String>> calls = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                String input = "value " + i;
+                calls.add(() -> coProcess.call(input, TIMEOUT));
+            }
+            List<Future<String>> results = executor.invokeAll(calls);
+            for (int i = 0; i < results.size(); i++) {
+                assertEquals("value " + i, results.get(i).get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void lineFramingRejectsLineBreaks() {
+        ExecCoProcess coProcess = createCoProcess(ExecCoProcess.Framing.LINE);
+
+        assertThrows(TransformationException.class, () -> coProcess.call("a\nb", TIMEOUT));
+    }
+
+    @Test
+    public void lengthFramingKeepsLineBreaks() throws TransformationException {
+        ExecCoProcess coProcess = createCoProcess(ExecCoProcess.Framing.LENGTH);
+
+        assertEquals("first line\nsecond line\n", coProcess.call("first line\nsecond line\n", TIMEOUT));
+        assertEquals("", coProcess.call("", TIMEOUT));
+        assertEquals("äöü\r\n", coProcess.call("äöü\r\n", TIMEOUT));
+    }
+
+    @Test
+    public void processIsRestartedAfterTimeout() throws Exception {
+        ExecCoProcess coProcess = createCoProcess(ExecCoProcess.Framing.LINE);
+
+        // nothing can answer that fast, so the process is stopped
+        assertThrows(TransformationException.class, () -> coProcess.call("lost", Duration.ZERO));
+        Thread.sleep(RESTART_WAIT_MS);
+
+        assertEquals("next", coProcess.call("next", TIMEOUT));
+    }
+
+    @Test
+    public void processIsRestartedAfterCrash() throws Exception {
+        ExecCoProcess coProcess = createCoProcess(ExecCoProcess.Framing.LINE);
+        assertEquals("before", coProcess.call("before", TIMEOUT));
+
+        List<ProcessHandle> children = new ArrayList<>();
+        ProcessHandle.current().children()
+                .filter(child -> child.info().command().map(command -> command.endsWith("cat")).orElse(false))
+                .forEach(children::add);
+        assertFalse(children.isEmpty());
+        for (ProcessHandle child : children) {
+            child.destroyForcibly();
+            child.onExit().get();
+        }
+        Thread.sleep(RESTART_WAIT_MS);
+
+        assertEquals("after", coProcess.call("after", TIMEOUT));
+    }
+}
@@ -0,0 +1,41 @@
+/**
+ * Copyright (c) 2010-2021 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.transform.exec.internal;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import org.eclipse.jdt.annotation.DefaultLocation;
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.junit.jupiter.api.Test;
+import org.openhab.core.transform.TransformationException;
+
+/**
+ * @author craigham - Initial contribution
+ */
+@SuppressWarnings("null")
+@NonNullByDefault(value = { DefaultLocation.PARAMETER, DefaultLocation.RETURN_TYPE })
+public class ExecTransformationServiceTest {
+
+    @Test
+    public void coProcessCommandMustNotContainPlaceholder() {
+        ExecTransformationWhitelistWatchService whitelist = mock(ExecTransformationWhitelistWatchService.class);
+        when(whitelist.isWhitelisted(anyString())).thenReturn(true);
+        ExecTransformationService service = new ExecTransformationService(whitelist);
+
+        assertThrows(TransformationException.class, () -> service.transform("coprocess:echo %s", "value"));
+        assertThrows(TransformationException.class, () -> service.transform("coprocess-length:echo %s", "value"));
+        verify(whitelist, never()).isWhitelisted(anyString());
+        service.deactivate();
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ * Copyright (c) 2010-2021 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.transform.javascript.internal;
+
+import java.io.StringReader;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptEngine;
+import javax.script.ScriptException;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * A script compiled on up to <code>maxEngines</code> script engines. A script engine is not thread-safe, so every
+ * evaluation borrows one compiled instance. Instances are compiled on demand, so a script that is never evaluated
+ * concurrently keeps a single engine.
+ *
+ * @author craigham - Initial contribution
+ */
+@NonNullByDefault
+class CompiledScriptPool {
+
+    private final String source;
+    private final Supplier<ScriptEngine> engineFactory;
+    private final Semaphore permits;
+    private final Queue<CompiledScript> idle = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Compiles the first instance, so errors in the script are reported right away.
+     *
+     * @throws ScriptException if the script does not compile
+     */
+    CompiledScriptPool(String source, Supplier<ScriptEngine> engineFactory, int maxEngines) throws ScriptException {
+        this.source = source;
+        this.engineFactory = engineFactory;
+        this.permits = new Semaphore(Math.max(1, maxEngines));
+        idle.add(compile());
+    }
+
+    /**
+     * Evaluates the script with the given input bound to the <code>input</code> variable. Waits if all engines are
+     * busy.
+     */
+    @Nullable
+    Object eval(String input) throws ScriptException {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ScriptException("Interrupted while waiting for a script engine");
+        }
+        CompiledScript script = idle.poll();
+        try {
+            if (script == null) {
+                script = compile();
+            }
+            final Bindings bindings = script.getEngine().createBindings();
+            bindings.put("input", input);
+            return script.eval(bindings);
+        } finally {
+            if (script != null) {
+                idle.offer(script);
+            }
+            permits.release();
+        }
+    }
+
+    private CompiledScript compile() throws ScriptException {
+        return ((Compilable) engineFactory.get()).compile(new StringReader(source));
+    }
+}
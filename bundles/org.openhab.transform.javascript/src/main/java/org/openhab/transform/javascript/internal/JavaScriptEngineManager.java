@@ -13,16 +13,14 @@
 package org.openhab.transform.javascript.internal;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 
-import javax.script.Compilable;
-import javax.script.CompiledScript;
-import javax.script.ScriptEngine;
 import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
 
@@ -35,6 +33,9 @@ import org.slf4j.LoggerFactory;
 /**
  * Simple cache for compiled JavaScript files.
  *
+ * Lookups do not lock. A file is compiled by the first thread that needs it, other threads wait for that compile
+ * only. Each script is compiled on a small pool of engines, so it can be evaluated by several threads at once.
+ *
  * @author Thomas Kordelle - Initial contribution
  * @author Thomas Kordelle - pre compiled scripts
  */
@@ -42,39 +43,59 @@ import org.slf4j.LoggerFactory;
 @Component(service = JavaScriptEngineManager.class)
 public class JavaScriptEngineManager {
 
+    private static final int MAX_ENGINES_PER_SCRIPT = Math.min(4, Runtime.getRuntime().availableProcessors());
+
     private final Logger logger = LoggerFactory.getLogger(JavaScriptEngineManager.class);
     private final ScriptEngineManager manager = new ScriptEngineManager();
-    /* keep memory foot print low. max 2 concurrent threads are estimated */
-    private final Map<String, CompiledScript> compiledScriptMap = new ConcurrentHashMap<>(4, 0.5f, 2);
+    private final Map<String, CompletableFuture<CompiledScriptPool>> compiledScriptMap = new ConcurrentHashMap<>();
+    // kept when a script is reloaded
+    private final Map<String, ScriptStatistics> statistics = new ConcurrentHashMap<>();
 
     /**
-     * Get a pre compiled script {@link CompiledScript} from cache. If it is not in the cache, then load it from
+     * Get a pre compiled script {@link CompiledScriptPool} from cache. If it is not in the cache, then load it from
      * storage and put a pre compiled version into the cache.
      *
      * @param filename name of the JavaScript file to load
-     * @return a pre compiled script {@link CompiledScript}
+     * @return a pre compiled script {@link CompiledScriptPool}
      * @throws TransformationException if compile of JavaScript failed
      */
-    protected CompiledScript getScript(final String filename) throws TransformationException {
-        synchronized (compiledScriptMap) {
-            CompiledScript compiledScript = compiledScriptMap.get(filename);
-            if (compiledScript != null) {
-                logger.debug("Loading JavaScript {} from cache.", filename);
-                return compiledScript;
-            } else {
-                final String path = TransformationScriptWatcher.TRANSFORM_FOLDER + File.separator + filename;
-                logger.debug("Loading script {} from storage ", path);
-                try (final Reader reader = new InputStreamReader(new FileInputStream(path))) {
-                    final ScriptEngine engine = manager.getEngineByName("javascript");
-                    final CompiledScript cScript = ((Compilable) engine).compile(reader);
-                    logger.debug("Putting compiled JavaScript {} to cache.", cScript);
-                    compiledScriptMap.put(filename, cScript);
-                    return cScript;
-                } catch (IOException | ScriptException e) {
-                    throw new TransformationException("An error occurred while loading JavaScript. " + e.getMessage(),
-                            e);
-                }
+    protected CompiledScriptPool getScript(final String filename) throws TransformationException {
+        CompletableFuture<CompiledScriptPool> future = compiledScriptMap.get(filename);
+        if (future == null) {
+            final CompletableFuture<CompiledScriptPool> newFuture = new CompletableFuture<>();
+            future = compiledScriptMap.putIfAbsent(filename, newFuture);
+            if (future == null) {
+                future = newFuture;
+                compile(filename, newFuture);
             }
+        } else {
+            logger.debug("Loading JavaScript {} from cache.", filename);
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransformationException("Interrupted while loading JavaScript " + filename, e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            throw new TransformationException(
+                    "An error occurred while loading JavaScript. " + (cause == null ? "" : cause.getMessage()), cause);
+        }
+    }
+
+    private void compile(final String filename, final CompletableFuture<CompiledScriptPool> future) {
+        final String path = TransformationScriptWatcher.TRANSFORM_FOLDER + File.separator + filename;
+        logger.debug("Loading script {} from storage ", path);
+        try {
+            final String source = new String(Files.readAllBytes(Paths.get(path)));
+            final CompiledScriptPool pool = new CompiledScriptPool(source,
+                    () -> manager.getEngineByName("javascript"), MAX_ENGINES_PER_SCRIPT);
+            logger.debug("Putting compiled JavaScript {} to cache.", filename);
+            future.complete(pool);
+        } catch (IOException | ScriptException | RuntimeException e) {
+            // do not cache the failure, the next call tries again
+            compiledScriptMap.remove(filename, future);
+            future.completeExceptionally(e);
         }
     }
 
@@ -86,5 +107,22 @@ public class JavaScriptEngineManager {
     protected void removeFromCache(String fileName) {
         logger.debug("Removing JavaScript {} from cache.", fileName);
         compiledScriptMap.remove(fileName);
+        final ScriptStatistics scriptStatistics = statistics.get(fileName);
+        if (scriptStatistics != null) {
+            logger.debug("Statistics of JavaScript {}: {}", fileName, scriptStatistics);
+        }
+    }
+
+    protected ScriptStatistics getStatistics(String filename) {
+        return statistics.computeIfAbsent(filename, f -> new ScriptStatistics());
+    }
+
+    /**
+     * Returns invocation counters and latencies of all scripts that have been evaluated.
+     *
+     * @return statistics by file name
+     */
+    public Map<String, ScriptStatistics> getStatistics() {
+        return Map.copyOf(statistics);
     }
 }
@@ -21,8 +21,6 @@ import java.util.List;
 import java.util.Locale;
 import java.util.stream.Collectors;
 
-import javax.script.Bindings;
-import javax.script.CompiledScript;
 import javax.script.ScriptException;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
@@ -80,22 +78,25 @@ public class JavaScriptTransformationService implements TransformationService, C
             throw new TransformationException("the given parameters 'filename' and 'source' must not be null");
         }
 
-        final long startTime = System.currentTimeMillis();
+        final long startTime = System.nanoTime();
         logger.debug("about to transform '{}' by the JavaScript '{}'", source, filename);
 
         String result = "";
+        boolean success = false;
 
         try {
-            final CompiledScript cScript = manager.getScript(filename);
-            final Bindings bindings = cScript.getEngine().createBindings();
-            bindings.put("input", source);
-            result = String.valueOf(cScript.eval(bindings));
+            final CompiledScriptPool cScript = manager.getScript(filename);
+            result = String.valueOf(cScript.eval(source));
+            success = true;
             return result;
         } catch (ScriptException e) {
             throw new TransformationException("An error occurred while executing script. " + e.getMessage(), e);
         } finally {
-            logger.trace("JavaScript execution elapsed {} ms. Result: {}", System.currentTimeMillis() - startTime,
-                    result);
+            final long elapsed = System.nanoTime() - startTime;
+            final ScriptStatistics statistics = manager.getStatistics(filename);
+            statistics.record(elapsed, success);
+            logger.trace("JavaScript execution elapsed {} ms. Result: {}. Statistics: {}", elapsed / 1_000_000, result,
+                    statistics);
         }
     }
 
@@ -0,0 +1,82 @@
+/**
+ * Copyright (c) 2010-2021 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.transform.javascript.internal;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+
+/**
+ * Invocation counters and a latency histogram of a JavaScript transformation.
+ *
+ * @author craigham - Initial contribution
+ */
+@NonNullByDefault
+public class ScriptStatistics {
+
+    /**
+     * Upper bounds (exclusive) of the latency buckets in milliseconds. The last bucket counts all slower invocations.
+     */
+    public static final long[] LATENCY_BUCKETS_MS = { 1, 5, 10, 50, 100, 500, 1000 };
+
+    private final LongAdder invocations = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLongArray latencyHistogram = new AtomicLongArray(LATENCY_BUCKETS_MS.length + 1);
+
+    void record(long nanos, boolean success) {
+        invocations.increment();
+        if (!success) {
+            failures.increment();
+        }
+        totalNanos.add(nanos);
+        long millis = nanos / 1_000_000;
+        int bucket = 0;
+        while (bucket < LATENCY_BUCKETS_MS.length && millis >= LATENCY_BUCKETS_MS[bucket]) {
+            bucket++;
+        }
+        latencyHistogram.incrementAndGet(bucket);
+    }
+
+    public long getInvocations() {
+        return invocations.sum();
+    }
+
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    public double getAverageMillis() {
+        long count = invocations.sum();
+        return count == 0 ? 0 : totalNanos.sum() / 1_000_000.0 / count;
+    }
+
+    /**
+     * @return the number of invocations per bucket of {@link #LATENCY_BUCKETS_MS}, plus one for slower invocations
+     */
+    public long[] getLatencyHistogram() {
+        long[] histogram = new long[latencyHistogram.length()];
+        for (int i = 0; i < histogram.length; i++) {
+            histogram[i] = latencyHistogram.get(i);
+        }
+        return histogram;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("invocations=%d failures=%d avg=%.2f ms histogram=%s", getInvocations(), getFailures(),
+                getAverageMillis(), Arrays.toString(getLatencyHistogram()));
+    }
+}
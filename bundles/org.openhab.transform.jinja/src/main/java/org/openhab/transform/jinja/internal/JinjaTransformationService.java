@@ -13,12 +13,12 @@
 package org.openhab.transform.jinja.internal;
 
 import java.io.IOException;
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.stream.Collectors;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.eclipse.jdt.annotation.Nullable;
@@ -32,7 +32,13 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.hubspot.jinjava.Jinjava;
 import com.hubspot.jinjava.JinjavaConfig;
+import com.hubspot.jinjava.interpret.Context;
 import com.hubspot.jinjava.interpret.FatalTemplateErrorsException;
+import com.hubspot.jinjava.interpret.InterpretException;
+import com.hubspot.jinjava.interpret.JinjavaInterpreter;
+import com.hubspot.jinjava.interpret.TemplateError;
+import com.hubspot.jinjava.interpret.TemplateError.ErrorType;
+import com.hubspot.jinjava.tree.Node;
 
 /**
  * <p>
@@ -45,10 +51,24 @@ import com.hubspot.jinjava.interpret.FatalTemplateErrorsException;
 @Component(property = { "openhab.transform=JINJA" })
 public class JinjaTransformationService implements TransformationService {
 
+    private static final int MAX_CACHED_TEMPLATES = 256;
+
     private final Logger logger = LoggerFactory.getLogger(JinjaTransformationService.class);
 
     private final JinjavaConfig config = JinjavaConfig.newBuilder().withFailOnUnknownTokens(true).build();
     private final Jinjava jinjava = new Jinjava(config);
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // parsed templates, the node trees are only read while rendering
+    private final Map<String, Node> parsedTemplates = Collections
+            .synchronizedMap(new LinkedHashMap<>(MAX_CACHED_TEMPLATES, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Node> eldest) {
+                    return size() > MAX_CACHED_TEMPLATES;
+                }
+            });
 
     /**
      * Transforms the input <code>value</code> by Jinja template.
@@ -67,14 +87,16 @@ public class JinjaTransformationService implements TransformationService {
         bindings.put("value", value);
 
         try {
-            JsonNode tree = new ObjectMapper().readTree(value);
-            bindings.put("value_json", toObject(tree));
+            JsonNode tree = objectMapper.readTree(value);
+            bindings.put("value_json", JsonNodeView.of(tree));
         } catch (IOException e) {
             // ok, then value_json is null...
         }
 
         try {
-            transformationResult = jinjava.render(template, bindings);
+            Node root = getParsedTemplate(template);
+            transformationResult = root == null ? jinjava.render(template, bindings)
+                    : render(template, root, bindings);
         } catch (FatalTemplateErrorsException e) {
             throw new TransformationException("An error occurred while transformation. " + e.getMessage(), e);
         }
@@ -84,33 +106,52 @@ public class JinjaTransformationService implements TransformationService {
         return transformationResult;
     }
 
-    private static @Nullable Object toObject(JsonNode node) {
-        switch (node.getNodeType()) {
-            case ARRAY: {
-                List<@Nullable Object> result = new ArrayList<>();
-                for (JsonNode el : node) {
-                    result.add(toObject(el));
-                }
-                return result;
-            }
-            case NUMBER:
-                return node.decimalValue();
-            case OBJECT: {
-                Map<String, @Nullable Object> result = new HashMap<>();
-                Iterator<Entry<String, JsonNode>> it = node.fields();
-                while (it.hasNext()) {
-                    Entry<String, JsonNode> field = it.next();
-                    result.put(field.getKey(), toObject(field.getValue()));
-                }
-                return result;
-            }
-            case STRING:
-                return node.asText();
-            case BOOLEAN:
-                return node.asBoolean();
-            case NULL:
-            default:
-                return null;
+    /**
+     * @return the parsed template, or <code>null</code> if parsing reported errors. Such templates are not cached and
+     *         rendered from source, so the errors are reported like before.
+     */
+    private @Nullable Node getParsedTemplate(String template) {
+        Node root = parsedTemplates.get(template);
+        if (root != null) {
+            return root;
+        }
+        JinjavaInterpreter interpreter = newInterpreter(Map.of());
+        JinjavaInterpreter.pushCurrent(interpreter);
+        try {
+            root = interpreter.parse(template);
+        } finally {
+            JinjavaInterpreter.popCurrent();
         }
+        if (!interpreter.getErrors().isEmpty()) {
+            return null;
+        }
+        parsedTemplates.put(template, root);
+        return root;
+    }
+
+    /**
+     * Renders a parsed template the same way {@link Jinjava#render(String, Map)} renders its source.
+     */
+    private String render(String template, Node root, Map<String, @Nullable Object> bindings) {
+        JinjavaInterpreter interpreter = newInterpreter(bindings);
+        String result;
+        JinjavaInterpreter.pushCurrent(interpreter);
+        try {
+            result = interpreter.render(root);
+        } catch (InterpretException e) {
+            throw new FatalTemplateErrorsException(template, List.of(TemplateError.fromSyntaxError(e)));
+        } finally {
+            JinjavaInterpreter.popCurrent();
+        }
+        List<TemplateError> fatalErrors = interpreter.getErrors().stream()
+                .filter(error -> error.getSeverity() == ErrorType.FATAL).collect(Collectors.toList());
+        if (!fatalErrors.isEmpty()) {
+            throw new FatalTemplateErrorsException(template, fatalErrors);
+        }
+        return result;
+    }
+
+    private JinjavaInterpreter newInterpreter(Map<String, @Nullable Object> bindings) {
+        return new JinjavaInterpreter(jinjava, new Context(jinjava.getGlobalContext(), bindings), config);
     }
 }
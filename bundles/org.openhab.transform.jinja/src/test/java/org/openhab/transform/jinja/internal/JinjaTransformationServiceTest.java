@@ -115,4 +115,26 @@ public class JinjaTransformationServiceTest {
         // then map key is defined
         assertEquals("true", transformedResponse);
     }
+
+    @Test
+    public void testCachedTemplate() throws TransformationException {
+        String template = "{{ value_json.temperature }}";
+
+        assertEquals("4.7", processor.transform(template, "{\"temperature\": 4.7}"));
+        // the parsed template is reused with new bindings
+        assertEquals("5.2", processor.transform(template, "{\"temperature\": 5.2}"));
+        assertThrows(TransformationException.class, () -> processor.transform(template, "{\"humidity\": 99}"));
+    }
+
+    @Test
+    public void testJsonArrayAndObject() throws TransformationException {
+        String json = "{\"sensors\":[{\"name\":\"a\",\"on\":true},{\"name\":\"b\",\"on\":false}]}";
+        // method under test
+        String transformedResponse = processor.transform(
+                "{% for sensor in value_json.sensors %}{{ sensor.name }}={{ sensor.on }};{% endfor %}{{ value_json.sensors|length }}",
+                json);
+
+        // Asserts
+        assertEquals("a=true;b=false;2", transformedResponse);
+    }
 }
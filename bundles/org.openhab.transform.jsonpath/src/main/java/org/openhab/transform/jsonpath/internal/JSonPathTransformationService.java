@@ -12,7 +12,10 @@
  */
 package org.openhab.transform.jsonpath.internal;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
@@ -24,6 +27,7 @@ import org.osgi.service.component.annotations.Component;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.jayway.jsonpath.DocumentContext;
 import com.jayway.jsonpath.InvalidJsonException;
 import com.jayway.jsonpath.InvalidPathException;
 import com.jayway.jsonpath.JsonPath;
@@ -41,8 +45,48 @@ import com.jayway.jsonpath.PathNotFoundException;
 @Component(property = { "openhab.transform=JSONPATH" })
 public class JSonPathTransformationService implements TransformationService {
 
+    private static final int MAX_CACHED_PATHS = 256;
+    private static final int MAX_CACHED_DOCUMENTS = 16;
+    private static final int MAX_CACHED_DOCUMENT_LENGTH = 256 * 1024;
+    private static final long DOCUMENT_CACHE_MILLIS = 1000;
+
     private final Logger logger = LoggerFactory.getLogger(JSonPathTransformationService.class);
 
+    private final Map<String, JsonPath> compiledPaths = Collections
+            .synchronizedMap(new LinkedHashMap<>(MAX_CACHED_PATHS, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, JsonPath> eldest) {
+                    return size() > MAX_CACHED_PATHS;
+                }
+            });
+
+    // several channels usually transform the same payload right after each other, so it is parsed only once
+    private final Map<String, ParsedDocument> parsedDocuments = Collections
+            .synchronizedMap(new LinkedHashMap<>(MAX_CACHED_DOCUMENTS, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, ParsedDocument> eldest) {
+                    return size() > MAX_CACHED_DOCUMENTS || eldest.getValue().isExpired();
+                }
+            });
+
+    private static class ParsedDocument {
+        private final DocumentContext context;
+        private final long expires;
+
+        private ParsedDocument(DocumentContext context) {
+            this.context = context;
+            this.expires = System.currentTimeMillis() + DOCUMENT_CACHE_MILLIS;
+        }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() > expires;
+        }
+    }
+
     /**
      * Transforms the input <code>source</code> by JSonPath expression.
      *
@@ -60,7 +104,7 @@ public class JSonPathTransformationService implements TransformationService {
         logger.debug("about to transform '{}' by the function '{}'", source, jsonPathExpression);
 
         try {
-            Object transformationResult = JsonPath.read(source, jsonPathExpression);
+            Object transformationResult = parse(source).read(compile(jsonPathExpression));
             logger.debug("transformation resulted in '{}'", transformationResult);
             if (transformationResult == null) {
                 return null;
@@ -76,6 +120,29 @@ public class JSonPathTransformationService implements TransformationService {
         }
     }
 
+    private JsonPath compile(String jsonPathExpression) {
+        JsonPath path = compiledPaths.get(jsonPathExpression);
+        if (path == null) {
+            // invalid expressions throw and are not cached
+            path = JsonPath.compile(jsonPathExpression);
+            compiledPaths.put(jsonPathExpression, path);
+        }
+        return path;
+    }
+
+    private DocumentContext parse(String source) {
+        if (source.length() > MAX_CACHED_DOCUMENT_LENGTH) {
+            return JsonPath.parse(source);
+        }
+        ParsedDocument document = parsedDocuments.get(source);
+        if (document == null || document.isExpired()) {
+            // invalid JSON throws and is not cached
+            document = new ParsedDocument(JsonPath.parse(source));
+            parsedDocuments.put(source, document);
+        }
+        return document.context;
+    }
+
     private String flattenList(List<?> list) {
         if (list.size() == 1) {
             return list.get(0).toString();
@@ -127,4 +127,29 @@ public class JSonPathTransformationServiceTest {
         String transformedResponse = processor.transform("$.data", json);
         assertEquals(list, transformedResponse);
     }
+
+    @Test
+    public void testSamePayloadWithSeveralPaths() throws TransformationException {
+        // the second and third transformation use the cached document
+        assertEquals("bob", processor.transform("$[0].name", jsonArray));
+        assertEquals("alice", processor.transform("$[1].name", jsonArray));
+        assertEquals("[1, 2]", processor.transform("$.*.id", jsonArray));
+        assertThrows(TransformationException.class, () -> processor.transform("$[5].id", jsonArray));
+    }
+
+    @Test
+    public void testSamePathWithChangingPayload() throws TransformationException {
+        // the compiled path is reused for every payload
+        for (int i = 0; i < 20; i++) {
+            assertEquals(String.valueOf(i), processor.transform("$.value", "{\"value\":" + i + "}"));
+        }
+    }
+
+    @Test
+    public void testInvalidInputIsNotCached() {
+        assertThrows(TransformationException.class, () -> processor.transform("$$", jsonArray));
+        assertThrows(TransformationException.class, () -> processor.transform("$$", jsonArray));
+        assertThrows(TransformationException.class, () -> processor.transform("$", "{id:"));
+        assertThrows(TransformationException.class, () -> processor.transform("$", "{id:"));
+    }
 }
@@ -0,0 +1,143 @@
+/**
+ * Copyright (c) 2010-2021 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.transform.regex.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * A replacement string of the substitution form, parsed once into literal text and group references.
+ *
+ * Supports the same syntax as {@link Matcher#replaceAll(String)}: <code>$n</code> and <code>${name}</code> refer to
+ * groups, a backslash escapes the next character.
+ *
+ * @author craigham - Initial contribution
+ */
+@NonNullByDefault
+class RegExReplacement {
+    private final List<Object> parts;
+
+    private RegExReplacement(List<Object> parts) {
+        this.parts = parts;
+    }
+
+    /**
+     * Parses the replacement, group numbers are resolved like {@link Matcher} does.
+     *
+     * @return the parsed replacement, or <code>null</code> if it contains an invalid group reference. As
+     *         {@link Matcher} only fails when it applies such a replacement, the caller should fall back to it.
+     */
+    static @Nullable RegExReplacement parse(Pattern pattern, String replacement) {
+        int groupCount = pattern.matcher("").groupCount();
+        List<Object> parts = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int cursor = 0;
+        while (cursor < replacement.length()) {
+            char nextChar = replacement.charAt(cursor);
+            if (nextChar == '\\') {
+                cursor++;
+                if (cursor == replacement.length()) {
+                    return null;
+                }
+                literal.append(replacement.charAt(cursor));
+                cursor++;
+            } else if (nextChar == '$') {
+                cursor++;
+                if (cursor == replacement.length()) {
+                    return null;
+                }
+                if (literal.length() > 0) {
+                    parts.add(literal.toString());
+                    literal.setLength(0);
+                }
+                nextChar = replacement.charAt(cursor);
+                if (nextChar == '{') {
+                    int end = replacement.indexOf('}', cursor);
+                    if (end < 0 || end == cursor + 1) {
+                        return null;
+                    }
+                    parts.add(new GroupName(replacement.substring(cursor + 1, end)));
+                    cursor = end + 1;
+                } else {
+                    int refNum = nextChar - '0';
+                    if (refNum < 0 || refNum > 9 || refNum > groupCount) {
+                        return null;
+                    }
+                    cursor++;
+                    // take more digits as long as the group exists
+                    while (cursor < replacement.length()) {
+                        int digit = replacement.charAt(cursor) - '0';
+                        if (digit < 0 || digit > 9 || refNum * 10 + digit > groupCount) {
+                            break;
+                        }
+                        refNum = refNum * 10 + digit;
+                        cursor++;
+                    }
+                    parts.add(refNum);
+                }
+            } else {
+                literal.append(nextChar);
+                cursor++;
+            }
+        }
+        if (literal.length() > 0) {
+            parts.add(literal.toString());
+        }
+        return new RegExReplacement(parts);
+    }
+
+    /**
+     * Replaces the first or all matches in the input.
+     */
+    String replace(Matcher matcher, String input, boolean all) {
+        if (!matcher.find()) {
+            return input;
+        }
+        StringBuilder result = new StringBuilder(input.length() + 16);
+        int last = 0;
+        do {
+            result.append(input, last, matcher.start());
+            for (Object part : parts) {
+                if (part instanceof Integer) {
+                    String group = matcher.group((Integer) part);
+                    if (group != null) {
+                        result.append(group);
+                    }
+                } else if (part instanceof GroupName) {
+                    String group = matcher.group(((GroupName) part).name);
+                    if (group != null) {
+                        result.append(group);
+                    }
+                } else {
+                    result.append((String) part);
+                }
+            }
+            last = matcher.end();
+        } while (all && matcher.find());
+        result.append(input, last, input.length());
+        return result.toString();
+    }
+
+    private static class GroupName {
+        private final String name;
+
+        private GroupName(String name) {
+            this.name = name;
+        }
+    }
+}
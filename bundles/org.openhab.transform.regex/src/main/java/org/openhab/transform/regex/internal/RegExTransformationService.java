@@ -12,6 +12,9 @@
  */
 package org.openhab.transform.regex.internal;
 
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -40,6 +43,38 @@ public class RegExTransformationService implements TransformationService {
 
     private static final Pattern SUBSTR_PATTERN = Pattern.compile("^s/(.*?[^\\\\])/(.*?[^\\\\])/(.*)$");
 
+    private static final int MAX_CACHED_EXPRESSIONS = 256;
+
+    private final Map<String, CompiledExpression> compiledExpressions = new ConcurrentHashMap<>();
+
+    /**
+     * A regular expression of either form, compiled once.
+     */
+    private static class CompiledExpression {
+        private final Pattern pattern;
+        private final boolean substitution;
+        private final boolean global;
+        private final String replacement;
+        private final @Nullable RegExReplacement parsedReplacement;
+
+        private CompiledExpression(String regExpression) {
+            Matcher substMatcher = SUBSTR_PATTERN.matcher(regExpression);
+            if (substMatcher.matches()) {
+                pattern = Pattern.compile(substMatcher.group(1));
+                substitution = true;
+                global = substMatcher.group(3).equals("g");
+                replacement = substMatcher.group(2);
+                parsedReplacement = RegExReplacement.parse(pattern, replacement);
+            } else {
+                pattern = Pattern.compile("^" + regExpression + "$", Pattern.DOTALL);
+                substitution = false;
+                global = false;
+                replacement = "";
+                parsedReplacement = null;
+            }
+        }
+    }
+
     @Override
     public @Nullable String transform(String regExpression, String source) throws TransformationException {
         if (regExpression == null || source == null) {
@@ -49,49 +84,63 @@ public class RegExTransformationService implements TransformationService {
         logger.debug("about to transform '{}' by the function '{}'", source, regExpression);
 
         String result = "";
+        String trimmedSource = source.trim();
+        CompiledExpression expression = compile(regExpression);
 
-        Matcher substMatcher = SUBSTR_PATTERN.matcher(regExpression);
-        if (substMatcher.matches()) {
+        if (expression.substitution) {
             logger.debug("Using substitution form of regex transformation");
-            String regex = substMatcher.group(1);
-            String substitution = substMatcher.group(2);
-            String options = substMatcher.group(3);
-            if (options.equals("g")) {
-                result = source.trim().replaceAll(regex, substitution);
+            Matcher substMatcher = expression.pattern.matcher(trimmedSource);
+            RegExReplacement parsedReplacement = expression.parsedReplacement;
+            if (parsedReplacement != null) {
+                return parsedReplacement.replace(substMatcher, trimmedSource, expression.global);
+            } else if (expression.global) {
+                return substMatcher.replaceAll(expression.replacement);
             } else {
-                result = source.trim().replaceFirst(regex, substitution);
-            }
-            if (result != null) {
-                return result;
+                return substMatcher.replaceFirst(expression.replacement);
             }
         }
 
-        Matcher matcher = Pattern.compile("^" + regExpression + "$", Pattern.DOTALL).matcher(source.trim());
+        Matcher matcher = expression.pattern.matcher(trimmedSource);
         if (!matcher.matches()) {
             logger.debug(
                     "the given regex '^{}$' doesn't match the given content '{}' -> couldn't compute transformation",
                     regExpression, source);
             return null;
         }
-        matcher.reset();
-
-        while (matcher.find()) {
-            if (matcher.groupCount() == 0) {
-                logger.info(
-                        "the given regular expression '^{}$' doesn't contain a group. No content will be extracted and returned!",
-                        regExpression);
-                continue;
-            }
 
-            result = matcher.group(1);
+        if (matcher.groupCount() == 0) {
+            logger.info(
+                    "the given regular expression '^{}$' doesn't contain a group. No content will be extracted and returned!",
+                    regExpression);
+            return result;
+        }
 
-            if (matcher.groupCount() > 1) {
-                logger.debug(
-                        "the given regular expression '^{}$' contains more than one group. Only the first group will be returned!",
-                        regExpression);
-            }
+        result = matcher.group(1);
+
+        if (matcher.groupCount() > 1) {
+            logger.debug(
+                    "the given regular expression '^{}$' contains more than one group. Only the first group will be returned!",
+                    regExpression);
         }
 
         return result;
     }
+
+    private CompiledExpression compile(String regExpression) {
+        CompiledExpression expression = compiledExpressions.get(regExpression);
+        if (expression == null) {
+            if (compiledExpressions.size() >= MAX_CACHED_EXPRESSIONS) {
+                // make room, expressions are usually few and static, so this rarely happens
+                Iterator<String> iterator = compiledExpressions.keySet().iterator();
+                if (iterator.hasNext()) {
+                    iterator.next();
+                    iterator.remove();
+                }
+            }
+            // invalid expressions throw and are not cached
+            expression = new CompiledExpression(regExpression);
+            compiledExpressions.put(regExpression, expression);
+        }
+        return expression;
+    }
 }
@@ -75,4 +75,22 @@ public class RegExTransformationServiceTest extends AbstractTransformationServic
         // Asserts
         assertEquals("varX=12 varY=54 ", transformedResponse);
     }
+
+    @Test
+    public void testTransformByRegex_substituteEscapedAndNamedGroups() throws TransformationException {
+        // method under test
+        String transformedResponse = processor.transform("s/(?<value>[0-9]+)/\\$${value}/g", "a1 b22");
+
+        // Asserts
+        assertEquals("a$1 b$22", transformedResponse);
+    }
+
+    @Test
+    public void testTransformByRegex_cachedExpressionWithChangingSource() throws TransformationException {
+        // the compiled expression is reused for every source
+        for (int i = 0; i < 10; i++) {
+            assertEquals(String.valueOf(i), processor.transform("T=(.*)C", " T=" + i + "C "));
+            assertEquals("v" + i, processor.transform("s/^/v/", String.valueOf(i)));
+        }
+    }
 }
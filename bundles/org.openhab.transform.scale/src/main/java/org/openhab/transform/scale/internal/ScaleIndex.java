@@ -0,0 +1,236 @@
+/**
+ * Copyright (c) 2010-2021 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.transform.scale.internal;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * A loaded scale file, compiled for fast lookups.
+ *
+ * The limits of all ranges split the numbers into segments: every limit itself and the open intervals between them.
+ * All values of a segment are in the same ranges, so the label of the first matching range, as presented in the
+ * file, is computed once per segment. A lookup is a binary search for the segment of a value.
+ *
+ * @author craigham - Initial contribution
+ */
+@NonNullByDefault
+class ScaleIndex {
+
+    private static final BigDecimal TWO = BigDecimal.valueOf(2);
+
+    private enum Token {
+        VALUE,
+        LABEL
+    }
+
+    /** all limits, sorted and without duplicates */
+    private final BigDecimal[] limits;
+    /** the limits as doubles, some may be equal after rounding */
+    private final double[] doubleLimits;
+    /** label per segment: segment 2i + 1 is limits[i], segment 2i is the interval below it */
+    private final @Nullable String[] labels;
+    private final List<Object> format;
+    private final @Nullable String nonNumeric;
+
+    /**
+     * @param ranges the ranges as presented in the file
+     * @param rangeLabels the label of each range
+     * @param format the format, with <code>%value%</code> and <code>%label%</code> placeholders
+     * @param nonNumeric the label of non numeric values, or <code>null</code>
+     */
+    ScaleIndex(List<Range> ranges, List<String> rangeLabels, String format, @Nullable String nonNumeric) {
+        TreeSet<BigDecimal> limitSet = new TreeSet<>();
+        for (Range range : ranges) {
+            if (range.min != null) {
+                limitSet.add(range.min);
+            }
+            if (range.max != null) {
+                limitSet.add(range.max);
+            }
+        }
+        limits = limitSet.toArray(new BigDecimal[0]);
+        doubleLimits = new double[limits.length];
+        for (int i = 0; i < limits.length; i++) {
+            doubleLimits[i] = limits[i].doubleValue();
+        }
+        labels = new String[2 * limits.length + 1];
+        for (int segment = 0; segment < labels.length; segment++) {
+            BigDecimal value = getSegmentValue(segment);
+            for (int i = 0; i < ranges.size(); i++) {
+                if (ranges.get(i).contains(value)) {
+                    labels[segment] = rangeLabels.get(i);
+                    break;
+                }
+            }
+        }
+        this.format = parseFormat(format);
+        this.nonNumeric = nonNumeric;
+    }
+
+    /**
+     * @return a value inside the given segment
+     */
+    private BigDecimal getSegmentValue(int segment) {
+        if (limits.length == 0) {
+            return BigDecimal.ZERO;
+        }
+        int index = segment / 2;
+        if (segment % 2 == 1) {
+            return limits[index];
+        } else if (index == 0) {
+            return limits[0].subtract(BigDecimal.ONE);
+        } else if (index == limits.length) {
+            return limits[index - 1].add(BigDecimal.ONE);
+        } else {
+            return limits[index - 1].add(limits[index]).divide(TWO);
+        }
+    }
+
+    /**
+     * @return the label of the first range containing the value, or <code>null</code> if there is none
+     */
+    @Nullable
+    String getLabel(BigDecimal value) {
+        int index = Arrays.binarySearch(limits, value);
+        return labels[index >= 0 ? 2 * index + 1 : -2 * (index + 1)];
+    }
+
+    /**
+     * Looks up a value without creating a {@link BigDecimal}, as long as the result does not depend on digits lost
+     * by rounding to a double.
+     *
+     * @param source a plain number, see {@link #isPlainNumber(String)}
+     * @return the label of the first range containing the value, or <code>null</code> if there is none
+     */
+    @Nullable
+    String getLabel(String source) {
+        // rounding does not change the order, so only a value equal to a limit after rounding may be on either
+        // side of it. Adding 0.0 turns -0.0 into 0.0, which is equal to the limit 0.
+        double value = Double.parseDouble(source) + 0.0;
+        int index = Arrays.binarySearch(doubleLimits, value);
+        if (index >= 0) {
+            return getLabel(new BigDecimal(source));
+        }
+        return labels[-2 * (index + 1)];
+    }
+
+    @Nullable
+    String getNonNumeric() {
+        return nonNumeric;
+    }
+
+    /**
+     * Replaces <code>%value%</code> by the source, then <code>%label%</code> by the label.
+     */
+    String format(String source, String label) {
+        StringBuilder result = new StringBuilder();
+        for (Object part : format) {
+            if (part == Token.VALUE) {
+                result.append(source);
+            } else if (part == Token.LABEL) {
+                result.append(label);
+            } else {
+                result.append((String) part);
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * Splits the format in the order the placeholders used to be replaced, so the same text is taken as a
+     * placeholder.
+     */
+    private static List<Object> parseFormat(String format) {
+        List<Object> parts = new ArrayList<>();
+        List<Object> valueParts = split(format, "%value%", Token.VALUE);
+        for (Object part : valueParts) {
+            if (part instanceof String) {
+                parts.addAll(split((String) part, "%label%", Token.LABEL));
+            } else {
+                parts.add(part);
+            }
+        }
+        return parts;
+    }
+
+    private static List<Object> split(String text, String placeholder, Token token) {
+        List<Object> parts = new ArrayList<>();
+        int start = 0;
+        int index;
+        while ((index = text.indexOf(placeholder, start)) >= 0) {
+            if (index > start) {
+                parts.add(text.substring(start, index));
+            }
+            parts.add(token);
+            start = index + placeholder.length();
+        }
+        if (start < text.length()) {
+            parts.add(text.substring(start));
+        }
+        return parts;
+    }
+
+    /**
+     * Checks for a decimal number with an optional exponent, which {@link Double#parseDouble(String)} and
+     * {@link BigDecimal#BigDecimal(String)} both accept.
+     */
+    static boolean isPlainNumber(String source) {
+        int length = source.length();
+        int i = 0;
+        if (i < length && (source.charAt(i) == '-' || source.charAt(i) == '+')) {
+            i++;
+        }
+        int digits = 0;
+        while (i < length && isDigit(source.charAt(i))) {
+            i++;
+            digits++;
+        }
+        if (i < length && source.charAt(i) == '.') {
+            i++;
+            while (i < length && isDigit(source.charAt(i))) {
+                i++;
+                digits++;
+            }
+        }
+        if (digits == 0) {
+            return false;
+        }
+        if (i < length && (source.charAt(i) == 'e' || source.charAt(i) == 'E')) {
+            i++;
+            if (i < length && (source.charAt(i) == '-' || source.charAt(i) == '+')) {
+                i++;
+            }
+            int exponentDigits = 0;
+            while (i < length && isDigit(source.charAt(i))) {
+                i++;
+                exponentDigits++;
+            }
+            // BigDecimal rejects exponents that do not fit an int
+            if (exponentDigits == 0 || exponentDigits > 4) {
+                return false;
+            }
+        }
+        return i == length;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
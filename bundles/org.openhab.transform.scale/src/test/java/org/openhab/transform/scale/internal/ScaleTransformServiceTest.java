@@ -153,4 +153,16 @@ public class ScaleTransformServiceTest {
         String transformedResponse = processor.transform(existingscale, source);
         assertEquals("", transformedResponse);
     }
+
+    @Test
+    public void testTransformByScaleNearLimits() throws TransformationException {
+        String existingscale = "scale/limits.scale";
+
+        assertEquals("middle", processor.transform(existingscale, "10.0"));
+        assertEquals("middle", processor.transform(existingscale, "1e1"));
+        // rounds to 10 as a double
+        assertEquals("low", processor.transform(existingscale, "9.99999999999999999999"));
+        assertEquals("extreme", processor.transform(existingscale, "300"));
+        assertEquals("high", processor.transform(existingscale, "299.99999999999999999999"));
+    }
 }
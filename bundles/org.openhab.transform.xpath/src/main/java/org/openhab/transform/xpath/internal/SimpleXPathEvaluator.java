@@ -0,0 +1,139 @@
+/**
+ * Copyright (c) 2010-2021 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.transform.xpath.internal;
+
+import java.io.StringReader;
+import java.util.regex.Pattern;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Evaluates simple absolute paths like <code>/a/b/c</code> or <code>/a/b/@c</code> while streaming the document.
+ *
+ * The result is the same as the string value XPath returns: the text content of the first matching element, or the
+ * value of the first matching attribute, or an empty string if nothing matches. Names must not have a prefix, so
+ * they only match elements and attributes without a namespace.
+ *
+ * @author craigham - Initial contribution
+ */
+@NonNullByDefault
+class SimpleXPathEvaluator {
+    private static final String NAME = "[A-Za-z_][A-Za-z0-9_.\\-]*";
+    private static final Pattern SIMPLE_PATH = Pattern.compile("(/" + NAME + ")+(/@" + NAME + ")?");
+
+    private final String[] elements;
+    private final @Nullable String attribute;
+
+    private SimpleXPathEvaluator(String[] elements, @Nullable String attribute) {
+        this.elements = elements;
+        this.attribute = attribute;
+    }
+
+    /**
+     * @return the evaluator, or <code>null</code> if the expression is not a simple path
+     */
+    static @Nullable SimpleXPathEvaluator parse(String xpathExpression) {
+        String expression = xpathExpression.trim();
+        if (!SIMPLE_PATH.matcher(expression).matches()) {
+            return null;
+        }
+        String attribute = null;
+        int attributeStart = expression.indexOf("/@");
+        if (attributeStart >= 0) {
+            attribute = expression.substring(attributeStart + 2);
+            expression = expression.substring(0, attributeStart);
+        }
+        return new SimpleXPathEvaluator(expression.substring(1).split("/"), attribute);
+    }
+
+    /**
+     * Reads the whole document, so malformed documents fail like they do with the DOM parser.
+     *
+     * @return the string value, or <code>null</code> if the document has a DTD and must be evaluated with the DOM
+     * @throws XMLStreamException if the document is malformed
+     */
+    @Nullable
+    String evaluate(XMLInputFactory inputFactory, String source) throws XMLStreamException {
+        XMLStreamReader reader = inputFactory.createXMLStreamReader(new StringReader(source));
+        try {
+            String result = null;
+            StringBuilder text = null;
+            int depth = 0;
+            // number of path steps matched by the current element and its ancestors
+            int matched = 0;
+            while (reader.hasNext()) {
+                switch (reader.next()) {
+                    case XMLStreamConstants.DTD:
+                        return null;
+                    case XMLStreamConstants.START_ELEMENT:
+                        depth++;
+                        if (result == null && text == null && matched == depth - 1 && depth <= elements.length
+                                && isNoNamespace(reader.getNamespaceURI())
+                                && elements[depth - 1].equals(reader.getLocalName())) {
+                            matched = depth;
+                            if (matched == elements.length) {
+                                String localAttribute = attribute;
+                                if (localAttribute == null) {
+                                    text = new StringBuilder();
+                                } else {
+                                    result = getAttribute(reader, localAttribute);
+                                }
+                            }
+                        }
+                        break;
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                    case XMLStreamConstants.SPACE:
+                        if (text != null) {
+                            text.append(reader.getText());
+                        }
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        if (matched == depth) {
+                            if (text != null && depth == elements.length) {
+                                result = text.toString();
+                                text = null;
+                            }
+                            matched--;
+                        }
+                        depth--;
+                        break;
+                    default:
+                        break;
+                }
+            }
+            return result == null ? "" : result;
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static @Nullable String getAttribute(XMLStreamReader reader, String name) {
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            if (name.equals(reader.getAttributeLocalName(i)) && isNoNamespace(reader.getAttributeNamespace(i))) {
+                return reader.getAttributeValue(i);
+            }
+        }
+        return null;
+    }
+
+    private static boolean isNoNamespace(@Nullable String namespaceUri) {
+        return namespaceUri == null || namespaceUri.isEmpty();
+    }
+}
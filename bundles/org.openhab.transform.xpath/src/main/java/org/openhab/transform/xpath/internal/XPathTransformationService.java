@@ -13,9 +13,16 @@
 package org.openhab.transform.xpath.internal;
 
 import java.io.StringReader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpression;
@@ -35,55 +42,134 @@ import org.xml.sax.InputSource;
  * <p>
  * The implementation of {@link TransformationService} which transforms the input by XPath Expressions.
  *
+ * <p>
+ * Parsers and compiled expressions are not thread-safe, so they are kept in a pool of evaluators which are borrowed
+ * for a single transformation. Simple absolute paths like <code>/a/b/c</code> or <code>/a/b/@c</code> are evaluated
+ * while streaming the document with {@link SimpleXPathEvaluator}, without building a DOM.
+ *
  * @author Thomas.Eichstaedt-Engelen
  */
 @NonNullByDefault
 @Component(property = { "openhab.transform=XPATH" })
 public class XPathTransformationService implements TransformationService {
 
+    private static final int MAX_IDLE_EVALUATORS = 8;
+    private static final int MAX_CACHED_EXPRESSIONS = 64;
+
     private final Logger logger = LoggerFactory.getLogger(XPathTransformationService.class);
 
-    @Override
-    public @Nullable String transform(String xpathExpression, String source) throws TransformationException {
-        if (xpathExpression == null || source == null) {
-            throw new TransformationException("the given parameters 'xpath' and 'source' must not be null");
+    private final DocumentBuilderFactory domFactory;
+    private @Nullable String domFactoryError;
+    private final XPathFactory xpathFactory = XPathFactory.newInstance();
+    private final Queue<Evaluator> idleEvaluators = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Everything needed to evaluate expressions in one thread at a time.
+     */
+    private class Evaluator {
+        private final DocumentBuilder builder;
+        private final XPath xpath;
+        private final XMLInputFactory inputFactory;
+        private final Map<String, XPathExpression> expressions = new LinkedHashMap<>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, XPathExpression> eldest) {
+                return size() > MAX_CACHED_EXPRESSIONS;
+            }
+        };
+
+        private Evaluator() throws ParserConfigurationException {
+            String error = domFactoryError;
+            if (error != null) {
+                // never parse without the hardened feature set
+                throw new ParserConfigurationException(error);
+            }
+            synchronized (domFactory) {
+                builder = domFactory.newDocumentBuilder();
+            }
+            synchronized (xpathFactory) {
+                xpath = xpathFactory.newXPath();
+            }
+            inputFactory = XMLInputFactory.newFactory();
+            inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+            inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
         }
 
-        logger.debug("about to transform '{}' by the function '{}'", source, xpathExpression);
+        private String evaluate(String xpathExpression, String source) throws Exception {
+            SimpleXPathEvaluator simplePath = SimpleXPathEvaluator.parse(xpathExpression);
+            if (simplePath != null) {
+                try {
+                    String result = simplePath.evaluate(inputFactory, source);
+                    if (result != null) {
+                        return result;
+                    }
+                    // documents with a DTD are left to the DOM parser, which knows how to handle them
+                } catch (XMLStreamException e) {
+                    throw new TransformationException("transformation throws exceptions", e);
+                }
+            }
 
-        StringReader stringReader = null;
+            XPathExpression expr = expressions.get(xpathExpression);
+            if (expr == null) {
+                expr = xpath.compile(xpathExpression);
+                expressions.put(xpathExpression, expr);
+            }
+
+            try (StringReader stringReader = new StringReader(source)) {
+                InputSource inputSource = new InputSource(stringReader);
+                inputSource.setEncoding("UTF-8");
+                Document doc = builder.parse(inputSource);
+                return (String) expr.evaluate(doc, XPathConstants.STRING);
+            } finally {
+                builder.reset();
+            }
+        }
+    }
 
+    public XPathTransformationService() {
+        domFactory = DocumentBuilderFactory.newInstance();
         try {
-            DocumentBuilderFactory domFactory = DocumentBuilderFactory.newInstance();
             // see https://cheatsheetseries.owasp.org/cheatsheets/XML_External_Entity_Prevention_Cheat_Sheet.html
             domFactory.setFeature("http://xml.org/sax/features/external-general-entities", false);
             domFactory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
             domFactory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
-            domFactory.setXIncludeAware(false);
-            domFactory.setExpandEntityReferences(false);
-            domFactory.setNamespaceAware(true);
-            domFactory.setValidating(false);
-            DocumentBuilder builder = domFactory.newDocumentBuilder();
+        } catch (ParserConfigurationException e) {
+            // reported by every transformation
+            domFactoryError = "Unable to configure XML parser: " + e.getMessage();
+        }
+        domFactory.setXIncludeAware(false);
+        domFactory.setExpandEntityReferences(false);
+        domFactory.setNamespaceAware(true);
+        domFactory.setValidating(false);
+    }
 
-            stringReader = new StringReader(source);
-            InputSource inputSource = new InputSource(stringReader);
-            inputSource.setEncoding("UTF-8");
+    @Override
+    public @Nullable String transform(String xpathExpression, String source) throws TransformationException {
+        if (xpathExpression == null || source == null) {
+            throw new TransformationException("the given parameters 'xpath' and 'source' must not be null");
+        }
 
-            Document doc = builder.parse(inputSource);
+        logger.debug("about to transform '{}' by the function '{}'", source, xpathExpression);
 
-            XPath xpath = XPathFactory.newInstance().newXPath();
-            XPathExpression expr = xpath.compile(xpathExpression);
+        Evaluator evaluator = idleEvaluators.poll();
+        try {
+            if (evaluator == null) {
+                evaluator = new Evaluator();
+            }
 
-            String transformationResult = (String) expr.evaluate(doc, XPathConstants.STRING);
+            String transformationResult = evaluator.evaluate(xpathExpression, source);
 
             logger.debug("transformation resulted in '{}'", transformationResult);
 
             return transformationResult;
+        } catch (TransformationException e) {
+            throw e;
         } catch (Exception e) {
             throw new TransformationException("transformation throws exceptions", e);
         } finally {
-            if (stringReader != null) {
-                stringReader.close();
+            if (evaluator != null && idleEvaluators.size() < MAX_IDLE_EVALUATORS) {
+                idleEvaluators.offer(evaluator);
             }
         }
     }
@@ -38,4 +38,25 @@ public class XPathTransformationServiceTest extends AbstractTransformationServic
         // Asserts
         assertEquals("8", transformedResponse);
     }
+
+    @Test
+    public void testTransformBySimplePath() throws TransformationException {
+        // evaluated while streaming, must give the same results as the DOM
+        assertEquals("8", processor.transform("/xml_api_reply/weather/current_conditions/temp_c/@data", source));
+        assertEquals("Di.", processor.transform(
+                "/xml_api_reply/weather/forecast_conditions/day_of_week/@data", source));
+        assertEquals("", processor.transform("/xml_api_reply/unknown", source));
+        assertEquals("ab", processor.transform("/a/b", "<a><b>a<c>b</c></b><b>c</b></a>"));
+    }
+
+    @Test
+    public void testTransformBySimplePathWithNamespace() throws TransformationException {
+        assertEquals("", processor.transform("/a/b", "<a xmlns=\"urn:test\"><b>1</b></a>"));
+    }
+
+    @Test
+    public void testTransformMalformedDocument() {
+        assertThrows(TransformationException.class, () -> processor.transform("/a/b", "<a><b>1</b>"));
+        assertThrows(TransformationException.class, () -> processor.transform("//b", "<a><b>1</b>"));
+    }
 }
@@ -0,0 +1,89 @@
+/**
+ * Copyright (c) 2010-2021 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.transform.xslt.internal;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.stream.StreamSource;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.openhab.core.transform.TransformationException;
+import org.osgi.service.component.annotations.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Simple cache for compiled XSLT stylesheets. {@link Templates} are thread-safe, so a cached stylesheet can be used by
+ * all transformations at the same time.
+ *
+ * @author craigham - Initial contribution
+ */
+@NonNullByDefault
+@Component(service = XsltTemplatesManager.class)
+public class XsltTemplatesManager {
+
+    private final Logger logger = LoggerFactory.getLogger(XsltTemplatesManager.class);
+    private final TransformerFactory transformerFactory = TransformerFactory.newInstance();
+    // keyed by the absolute path of the stylesheet
+    private final Map<Path, Templates> templatesMap = new ConcurrentHashMap<>();
+
+    /**
+     * Get compiled {@link Templates} from cache. If they are not in the cache, then load the stylesheet from storage
+     * and put the compiled version into the cache.
+     *
+     * @param filename name of the XSLT file to load, relative to the transform folder
+     * @return the compiled stylesheet
+     * @throws TransformationException if the stylesheet could not be compiled
+     */
+    protected Templates getTemplates(final String filename) throws TransformationException {
+        final Path path = getPath(filename);
+        Templates templates = templatesMap.get(path);
+        if (templates != null) {
+            logger.debug("Loading XSLT {} from cache.", path);
+            return templates;
+        }
+        logger.debug("Loading XSLT {} from storage", path);
+        try {
+            // TransformerFactory is not thread-safe
+            synchronized (transformerFactory) {
+                templates = transformerFactory.newTemplates(new StreamSource(path.toFile()));
+            }
+        } catch (TransformerConfigurationException e) {
+            throw new TransformationException("An error occurred while loading XSLT. " + e.getMessage(), e);
+        }
+        templatesMap.put(path, templates);
+        return templates;
+    }
+
+    /**
+     * Remove a compiled stylesheet from cache.
+     *
+     * @param path path of the changed or deleted file
+     */
+    protected void removeFromCache(Path path) {
+        if (templatesMap.remove(path.toAbsolutePath().normalize()) != null) {
+            logger.debug("Removed XSLT {} from cache.", path);
+        }
+    }
+
+    private Path getPath(String filename) {
+        return Path.of(XsltTransformationWatcher.TRANSFORM_FOLDER + File.separator + filename).toAbsolutePath()
+                .normalize();
+    }
+}
@@ -27,7 +27,7 @@ public class XsltTransformationServiceTest extends AbstractTransformationService
 
     @BeforeEach
     public void init() {
-        processor = new XsltTransformationService();
+        processor = new XsltTransformationService(new XsltTemplatesManager());
     }
 
     @Test
@@ -38,4 +38,19 @@ public class XsltTransformationServiceTest extends AbstractTransformationService
         // Asserts
         assertEquals("8", transformedResponse);
     }
+
+    @Test
+    public void testTransformByXSLTFromCache() throws TransformationException {
+        processor.transform("http/google_weather.xsl", source);
+
+        // second call uses the cached stylesheet
+        String transformedResponse = processor.transform("http/google_weather.xsl", source);
+
+        assertEquals("8", transformedResponse);
+    }
+
+    @Test
+    public void testTransformByMissingXSLT() {
+        assertThrows(TransformationException.class, () -> processor.transform("http/missing.xsl", source));
+    }
 }